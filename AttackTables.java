@@ -0,0 +1,133 @@
+import java.util.Arrays;
+
+/**
+ * AttackTables holds the movement geometry of every piece for the 5x8 board.
+ * The tables are built once when the class is loaded, so the rule checks in
+ * Biz, Sau, Ram, Tor and Xor become array lookups and bit tests.
+ * Squares are numbered the same way as in Position.
+ */
+public final class AttackTables {
+    // Ray directions as {column step, row step}.
+    // The first four are orthogonal (Tor), the last four are diagonal (Xor).
+    public static final int[][] DIRECTIONS = {
+            { 0, -1 }, { 1, 0 }, { 0, 1 }, { -1, 0 },
+            { 1, -1 }, { 1, 1 }, { -1, 1 }, { -1, -1 }
+    };
+    public static final int FIRST_TOR_DIRECTION = 0;
+    public static final int FIRST_XOR_DIRECTION = 4;
+
+    private static final int N = Position.SQUARES;
+
+    private static final long[] BIZ = new long[N]; // Biz targets from each square
+    private static final long[] SAU = new long[N]; // Sau targets from each square
+    private static final int[][] RAM = new int[2][N]; // Ram target going up [0] or down [1] the board, -1 if none
+    private static final int[][][] RAYS = new int[N][DIRECTIONS.length][]; // Squares along each ray, nearest first
+    private static final long[] TOR_LINES = new long[N]; // Every square a Tor could reach on an empty board
+    private static final long[] XOR_LINES = new long[N]; // Every square a Xor could reach on an empty board
+    private static final long[][] BETWEEN = new long[N][N]; // Squares strictly between two aligned squares
+
+    static {
+        for (int square = 0; square < N; square++) {
+            int col = Position.colOf(square);
+            int row = Position.rowOf(square);
+
+            for (int dc = -2; dc <= 2; dc++) {
+                for (int dr = -2; dr <= 2; dr++) {
+                    if (!Position.onBoard(col + dc, row + dr)) {
+                        continue;
+                    }
+                    long target = Position.bit(Position.square(col + dc, row + dr));
+                    if (Math.abs(dc * dr) == 2) {
+                        BIZ[square] |= target;
+                    }
+                    if (Math.abs(dc) <= 1 && Math.abs(dr) <= 1 && (dc != 0 || dr != 0)) {
+                        SAU[square] |= target;
+                    }
+                }
+            }
+
+            RAM[0][square] = row > 0 ? Position.square(col, row - 1) : -1;
+            RAM[1][square] = row < Position.ROWS - 1 ? Position.square(col, row + 1) : -1;
+
+            for (int dir = 0; dir < DIRECTIONS.length; dir++) {
+                int length = 0;
+                int[] ray = new int[Position.ROWS];
+                long path = 0;
+                int c = col + DIRECTIONS[dir][0];
+                int r = row + DIRECTIONS[dir][1];
+                while (Position.onBoard(c, r)) {
+                    int target = Position.square(c, r);
+                    ray[length++] = target;
+                    BETWEEN[square][target] = path;
+                    path |= Position.bit(target);
+                    c += DIRECTIONS[dir][0];
+                    r += DIRECTIONS[dir][1];
+                }
+                RAYS[square][dir] = Arrays.copyOf(ray, length);
+                if (dir < FIRST_XOR_DIRECTION) {
+                    TOR_LINES[square] |= path;
+                } else {
+                    XOR_LINES[square] |= path;
+                }
+            }
+        }
+    }
+
+    private AttackTables() {
+    }
+
+    public static long bizAttacks(int square) {
+        return BIZ[square];
+    }
+
+    public static long sauAttacks(int square) {
+        return SAU[square];
+    }
+
+    // The single square a Ram can step to, or -1 when it is at the edge.
+    // Up means towards row 0, the direction Red moves in at the start.
+    public static int ramTarget(int square, boolean up) {
+        return RAM[up ? 0 : 1][square];
+    }
+
+    public static long torLines(int square) {
+        return TOR_LINES[square];
+    }
+
+    public static long xorLines(int square) {
+        return XOR_LINES[square];
+    }
+
+    // The squares a Tor on the square attacks, stopping at the first piece on each ray.
+    public static long torAttacks(int square, long occupied) {
+        return slide(square, FIRST_TOR_DIRECTION, occupied);
+    }
+
+    // The squares a Xor on the square attacks, stopping at the first piece on each ray.
+    public static long xorAttacks(int square, long occupied) {
+        return slide(square, FIRST_XOR_DIRECTION, occupied);
+    }
+
+    private static long slide(int square, int firstDirection, long occupied) {
+        long attacks = 0;
+        for (int dir = firstDirection; dir < firstDirection + 4; dir++) {
+            for (int target : RAYS[square][dir]) {
+                attacks |= Position.bit(target);
+                if ((occupied & Position.bit(target)) != 0) {
+                    break;
+                }
+            }
+        }
+        return attacks;
+    }
+
+    // The squares along one ray, ordered from the nearest outwards.
+    public static int[] ray(int square, int direction) {
+        return RAYS[square][direction];
+    }
+
+    // The squares a slider passes over between two aligned squares, or 0 if they are not aligned.
+    public static long between(int from, int to) {
+        return BETWEEN[from][to];
+    }
+}
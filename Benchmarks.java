@@ -0,0 +1,223 @@
+/**
+ * Benchmarks times the hot paths of the game and counts what they allocate, so a
+ * change that slows them down or makes them produce garbage shows up as a number.
+ * Each benchmark runs untimed for a warm-up period so the JIT has compiled it,
+ * then runs for the measurement period. It reports the time per operation,
+ * operations per second and the bytes allocated per operation on the benchmark thread.
+ *
+ * Usage: java -Djava.awt.headless=true Benchmarks [warmupMillis] [measureMillis] [name filter]
+ * Run it from the project folder so the piece images are found.
+ */
+
+import java.awt.Graphics2D;
+import java.awt.image.BufferedImage;
+import java.io.File;
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+public class Benchmarks {
+    private static final int GAME_LENGTH = 24; // Plies in the game replayed by the makeMove benchmark
+
+    private static long warmupMillis = 1000;
+    private static long measureMillis = 2000;
+    private static volatile long sink; // Results go here so the JIT cannot drop the work
+
+    // One operation of a benchmark. The returned value is only used to keep the work alive.
+    private interface Operation {
+        long run();
+    }
+
+    public static void main(String[] args) throws IOException {
+        if (args.length > 0) {
+            warmupMillis = Long.parseLong(args[0]);
+        }
+        if (args.length > 1) {
+            measureMillis = Long.parseLong(args[1]);
+        }
+        String filter = args.length > 2 ? args[2] : "";
+
+        System.out.printf("%-28s %12s %14s %12s%n", "benchmark", "ns/op", "ops/s", "bytes/op");
+        for (String name : new String[] { "getPiece", "isValidMove", "getValidMoves", "makeMove+endTurn",
+                "saveGame+loadGame", "paintComponent", "paintDragRegion" }) {
+            if (name.contains(filter)) {
+                System.out.println(run(name, create(name)));
+            }
+        }
+        System.exit(0); // The sprite scaler and the engine's helper threads would keep going otherwise
+    }
+
+    // Sets up a benchmark and returns its operation.
+    private static Operation create(String name) throws IOException {
+        ChessModel model = new ChessModel();
+        model.setQuiet(true); // Its messages for every turn, save and load would flood the results
+        switch (name) {
+            case "getPiece": {
+                int[] square = { 0 };
+                return () -> {
+                    int s = square[0] = (square[0] + 1) % Position.SQUARES;
+                    return model.getPiece(Position.colOf(s), Position.rowOf(s)) != null ? 1 : 0;
+                };
+            }
+            case "isValidMove": {
+                // Every square for every piece of the side to move, legal or not
+                List<MovePiece> candidates = new ArrayList<>();
+                for (Pieces p : model.getPiecesArr()) {
+                    if (p.getIsRed() == model.isRedTurn()) {
+                        for (int s = 0; s < Position.SQUARES; s++) {
+                            candidates.add(new MovePiece(model, p, Position.colOf(s), Position.rowOf(s)));
+                        }
+                    }
+                }
+                int[] next = { 0 };
+                return () -> {
+                    next[0] = (next[0] + 1) % candidates.size();
+                    return model.isValidMove(candidates.get(next[0])) ? 1 : 0;
+                };
+            }
+            case "getValidMoves": {
+                List<Pieces> own = new ArrayList<>();
+                for (Pieces p : model.getPiecesArr()) {
+                    if (p.getIsRed() == model.isRedTurn()) {
+                        own.add(p);
+                    }
+                }
+                int[] next = { 0 };
+                return () -> {
+                    next[0] = (next[0] + 1) % own.size();
+                    model.selectedPiece = own.get(next[0]);
+                    return model.getValidMoves().size();
+                };
+            }
+            case "makeMove+endTurn": {
+                // Replays a fixed game the way the controller plays moves, the reset
+                // at the end of the game is spread over its moves.
+                int[][] game = recordGame();
+                int[] ply = { 0 };
+                return () -> {
+                    if (ply[0] == game.length) {
+                        model.resetBoard();
+                        ply[0] = 0;
+                    }
+                    int[] m = game[ply[0]++];
+                    Pieces piece = model.getPiece(m[0], m[1]);
+                    model.selectedPiece = piece;
+                    model.makeMove(new MovePiece(model, piece, m[2], m[3]));
+                    return model.getTurnCount();
+                };
+            }
+            case "saveGame+loadGame": {
+                File file = File.createTempFile("benchmark", "");
+                file.delete();
+                String path = file.getPath();
+                new File(path + ".txt").deleteOnExit();
+                return () -> {
+                    model.saveGame(path);
+                    model.loadGame(path + ".txt");
+                    return model.getPiecesArr().size();
+                };
+            }
+            case "paintComponent":
+            case "paintDragRegion": {
+                ChessView view = new ChessView(model);
+                view.setController(new ChessController(model, view));
+                view.setSize(400, 640);
+                model.setSquareSize(view.getSquareSize());
+                BufferedImage image = new BufferedImage(400, 640, BufferedImage.TYPE_INT_ARGB);
+                // Lets the sprites for this size be scaled first, drawing them is what is measured
+                paint(view, image);
+                try {
+                    Thread.sleep(500);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+                if (name.equals("paintComponent")) {
+                    return () -> {
+                        paint(view, image);
+                        return image.getRGB(200, 320);
+                    };
+                }
+                // What one mouse-drag event repaints: the square a dragged piece left and the one it entered
+                int squareSize = view.getSquareSize();
+                return () -> {
+                    Graphics2D g = image.createGraphics();
+                    g.setClip(2 * squareSize, 3 * squareSize, squareSize, 2 * squareSize);
+                    view.paintComponent(g);
+                    g.dispose();
+                    return image.getRGB(2 * squareSize, 3 * squareSize);
+                };
+            }
+            default:
+                throw new IllegalArgumentException("Unknown benchmark: " + name);
+        }
+    }
+
+    private static void paint(ChessView view, BufferedImage image) {
+        Graphics2D g = image.createGraphics();
+        view.paintComponent(g);
+        g.dispose();
+    }
+
+    // A game of random legal moves, the same on every run, as {col, row, newCol, newRow} per ply.
+    private static int[][] recordGame() {
+        Position position = new Position();
+        position.setupInitial();
+        Random random = new Random(15);
+        int[] moves = new int[MoveList.MAX_MOVES];
+        List<int[]> game = new ArrayList<>();
+        while (game.size() < GAME_LENGTH) {
+            int count = position.generateMoves(moves);
+            int move = Move.NONE;
+            // Avoids taking a Sau, which would end the game early
+            for (int tries = 0; tries < 100 && (move == Move.NONE || Move.isSauCapture(move)); tries++) {
+                move = moves[random.nextInt(count)];
+            }
+            position.makeMove(move);
+            game.add(new int[] { Position.colOf(Move.from(move)), Position.rowOf(Move.from(move)),
+                    Position.colOf(Move.to(move)), Position.rowOf(Move.to(move)) });
+        }
+        return game.toArray(new int[0][]);
+    }
+
+    // Warms the operation up, then measures it, and formats the result as one line.
+    private static String run(String name, Operation operation) {
+        long end = System.nanoTime() + warmupMillis * 1_000_000;
+        while (System.nanoTime() < end) {
+            for (int i = 0; i < 64; i++) {
+                sink += operation.run();
+            }
+        }
+
+        long operations = 0;
+        long allocatedBefore = allocatedBytes();
+        long start = System.nanoTime();
+        end = start + measureMillis * 1_000_000;
+        long now;
+        do {
+            for (int i = 0; i < 64; i++) {
+                sink += operation.run();
+            }
+            operations += 64;
+            now = System.nanoTime();
+        } while (now < end);
+        long allocated = allocatedBytes() - allocatedBefore;
+
+        double nanosPerOp = (double) (now - start) / operations;
+        String bytesPerOp = allocatedBefore < 0 ? "n/a" : String.format("%.1f", (double) allocated / operations);
+        return String.format("%-28s %12.1f %14.0f %12s", name, nanosPerOp, 1e9 / nanosPerOp, bytesPerOp);
+    }
+
+    // Bytes allocated so far by this thread, or -1 if the JVM cannot tell.
+    private static long allocatedBytes() {
+        java.lang.management.ThreadMXBean bean = ManagementFactory.getThreadMXBean();
+        if (bean instanceof com.sun.management.ThreadMXBean) {
+            com.sun.management.ThreadMXBean sunBean = (com.sun.management.ThreadMXBean) bean;
+            if (sunBean.isThreadAllocatedMemorySupported() && sunBean.isThreadAllocatedMemoryEnabled()) {
+                return sunBean.getThreadAllocatedBytes(Thread.currentThread().getId());
+            }
+        }
+        return -1;
+    }
+}
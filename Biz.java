@@ -1,3 +1,5 @@
+import java.util.List;
+
 public class Biz extends Pieces {
 
     // Constructor written by Zong Xin
@@ -8,14 +10,6 @@ public class Biz extends Pieces {
         int xPos = col * squareSize;
         int yPos = row * squareSize;
         initializeScreenPosition(xPos, yPos);
-
-        // It uses a method from the parent class to load the
-        // appropriate image based on its team color.
-        initializeImage("pieces/" + (isRed ? "r_biz" : "b_biz"));
-
-        if (getCurrentImage() == null) {
-            System.err.println("Failed to load image for " + (isRed ? "red Biz" : "blue Biz"));
-        }
     }
 
     // Determines whether a move is valid for the Biz piece.
@@ -23,7 +17,13 @@ public class Biz extends Pieces {
     @Override
     public boolean isValid(int col, int row) {
         // The Biz moves in an "L" shape: 2 squares in one direction, 1 in the other.
-        return Math.abs(col - getCol()) * Math.abs(row - getRow()) == 2;
-        // get +ve value
+        return Position.onBoard(col, row)
+                && (AttackTables.bizAttacks(getSquare()) & Position.bit(Position.square(col, row))) != 0;
+    }
+
+    // Adds the squares the Biz can jump to.
+    @Override
+    public void generateMoves(ChessModel board, List<MovePiece> moves) {
+        addTargets(board, AttackTables.bizAttacks(getSquare()), moves);
     }
 }
@@ -3,14 +3,29 @@
 // while Zong Xin worked on the remaining functionalities.
 // The ChessController class handles user interactions, including mouse events for piece selection and movement,  
 // as well as button actions such as restarting, saving, and loading the game.
+// It also lets the Engine play either side. The engine thinks on a background
+// thread and its move is played back on the Swing event thread.
 
 import java.awt.event.*;
+import java.io.File;
 import java.util.*;
+import java.util.concurrent.ExecutionException;
+import javax.swing.SwingWorker;
 
 public class ChessController extends MouseAdapter implements ActionListener {
+    private static final long THINK_TIME = 1000; // Milliseconds the computer may think per move
+    private static final int MAX_DEPTH = 64; // Deepest the computer searches when there is time
+    private static final int TABLE_MB = 64; // Size of the computer's transposition table
+
     private ChessModel board;       
     private ChessView view;
     private boolean wasDragged = false; // Keep track of whether the piece has been dragged before.
+    // The computer searches on every core. Made on its first move, so two-player games never allocate its table.
+    private ParallelSearch engine;
+    private SwingWorker<Engine.SearchResult, Void> thinking; // The computer's search, null when idle
+    private Boolean computerIsRed = null; // The side the computer plays, null when two people play
+    private int gameNumber = 0; // Changes on restart and load, so a search for an old game is ignored
+    private Tablebases tablebases; // Solved endgames, null when none were loaded
 
     // Constructor for ChessController.
     // Initializes the controller with references to the model and view.
@@ -28,13 +43,21 @@ public class ChessController extends MouseAdapter implements ActionListener {
     @Override
     public void mousePressed(MouseEvent e) {
         wasDragged = false;
+        if (isComputerTurn()) {
+            return; // The computer is to move, the pieces cannot be picked up
+        }
         int squareSize = view.getSquareSize();
-        int col = e.getX() / squareSize;
-        int row = e.getY() / squareSize;
+        int col = view.mapCol(e.getX() / squareSize);
+        int row = view.mapRow(e.getY() / squareSize);
 
         Pieces piecePos = board.getPiece(col, row);
         if (piecePos != null) {
             board.selectedPiece = piecePos;
+            // While selected the piece is drawn at its screen position
+            piecePos.setXPos((e.getX() / squareSize) * squareSize);
+            piecePos.setYPos((e.getY() / squareSize) * squareSize);
+            view.refreshHighlights(); // Work out the highlights once, dragging reuses them
+            view.repaintHighlights();
         }
     }
 
@@ -47,22 +70,32 @@ public class ChessController extends MouseAdapter implements ActionListener {
      */
     @Override
     public void mouseReleased(MouseEvent e) {
+        Pieces selected = board.selectedPiece;
+        if (selected != null) {
+            // Clear where the piece was dragged to and its highlights. A move made below
+            // repaints its own squares once the model's event arrives.
+            view.repaintAt(selected.getXPos(), selected.getYPos());
+            view.repaintSquare(selected.getSquare());
+            view.repaintHighlights();
+        }
         if (board.selectedPiece != null && wasDragged) {
             int squareSize = view.getSquareSize();
-            int col = e.getX() / squareSize;
-            int row = e.getY() / squareSize;
+            int col = view.mapCol(e.getX() / squareSize);
+            int row = view.mapRow(e.getY() / squareSize);
 
             MovePiece move = new MovePiece(board, board.selectedPiece, col, row);
 
             if (board.isValidMove(move)) {
                 board.makeMove(move);
+                if (isComputerTurn()) {
+                    startComputerMove();
+                }
             } else {
-                board.selectedPiece.setXPos(board.selectedPiece.getCol() * view.getSquareSize());
-                board.selectedPiece.setYPos(board.selectedPiece.getRow() * view.getSquareSize());
+                board.selectedPiece.setXPos(view.mapCol(board.selectedPiece.getCol()) * view.getSquareSize());
+                board.selectedPiece.setYPos(view.mapRow(board.selectedPiece.getRow()) * view.getSquareSize());
             }
         }
         board.selectedPiece = null; // deselect the piece
-        view.repaint(); // update the visual state
     }
 
     /**
@@ -89,12 +122,17 @@ public class ChessController extends MouseAdapter implements ActionListener {
             newX = (newX / squareSize) * squareSize;
             newY = (newY / squareSize) * squareSize;
 
-            // Update the position
+            // Only the square the piece left and the one it is now on need painting,
+            // and nothing at all while it stays on the same square
+            int oldX = board.selectedPiece.getXPos();
+            int oldY = board.selectedPiece.getYPos();
+            if (newX == oldX && newY == oldY) {
+                return;
+            }
             board.selectedPiece.setXPos(newX);
             board.selectedPiece.setYPos(newY);
-
-            // Repaint to reflect changes
-            view.repaint();
+            view.repaintAt(oldX, oldY);
+            view.repaintAt(newX, newY);
         }
     }
 
@@ -118,6 +156,110 @@ public class ChessController extends MouseAdapter implements ActionListener {
             case "Load File":
                 loadSaveFile();
                 break;
+            case "Computer Move":
+                startComputerMove();
+                break;
+            case "Vs Computer":
+                toggleComputerOpponent();
+                break;
+        }
+    }
+
+    // Gives the computer and the board's hint the solved endgames, null for none.
+    public void setTablebases(Tablebases tablebases) {
+        this.tablebases = tablebases;
+        if (engine != null) {
+            engine.setTablebases(tablebases);
+        }
+        view.repaint();
+    }
+
+    // Who wins the position with perfect play and how fast, or null when no tablebase covers it.
+    public String getTablebaseHint() {
+        return tablebases == null ? null : tablebases.describe(board.getPosition());
+    }
+
+    // The side the computer plays, or null when two people are playing.
+    public Boolean getComputerIsRed() {
+        return computerIsRed;
+    }
+
+    // Checks whether the computer is thinking or is the side to move.
+    private boolean isComputerTurn() {
+        return thinking != null || (computerIsRed != null && computerIsRed == board.isRedTurn());
+    }
+
+    // Turns the computer opponent on or off. When turned on it takes the side
+    // that is not to move, so the player keeps the pieces they were about to move.
+    private void toggleComputerOpponent() {
+        if (computerIsRed == null) {
+            computerIsRed = !board.isRedTurn();
+        } else {
+            computerIsRed = null;
+        }
+        view.repaint(); // The board now stays with the player's side at the bottom
+    }
+
+    // Starts the computer's move when it plays the side to move.
+    private void startComputerMoveIfDue() {
+        if (computerIsRed != null && computerIsRed == board.isRedTurn()) {
+            startComputerMove();
+        }
+    }
+
+    // Lets the engine choose a move for the side to move on a background thread.
+    // The move is made once the search finishes, unless the game was restarted or loaded meanwhile.
+    // Only one search runs at a time, as they share the engine. A search for an old game
+    // starts the computer's move in the new one when it finishes, see done().
+    private void startComputerMove() {
+        Position position = board.getPosition();
+        if (thinking != null || position.isGameOver()) {
+            return;
+        }
+        if (engine == null) {
+            engine = new ParallelSearch(Runtime.getRuntime().availableProcessors(), TABLE_MB);
+            engine.setTablebases(tablebases);
+        }
+        ParallelSearch search = engine;
+        search.prepare(); // Here rather than in the worker, so a restart before it runs still stops it
+        Position snapshot = new Position(position);
+        int searchedGame = gameNumber;
+        thinking = new SwingWorker<Engine.SearchResult, Void>() {
+            @Override
+            protected Engine.SearchResult doInBackground() {
+                return search.search(snapshot, MAX_DEPTH, THINK_TIME);
+            }
+
+            @Override
+            protected void done() {
+                thinking = null;
+                if (searchedGame != gameNumber) {
+                    // The game was restarted or loaded while this search ran
+                    startComputerMoveIfDue();
+                    return;
+                }
+                Engine.SearchResult result;
+                try {
+                    result = get();
+                } catch (InterruptedException | ExecutionException ex) {
+                    System.err.println("Computer move failed: " + ex.getMessage());
+                    return;
+                }
+                System.out.println("Computer: " + result);
+                if (result.getBestMove() == Move.NONE) {
+                    return;
+                }
+                board.makeMove(new MovePiece(board, result.getBestMove()));
+            }
+        };
+        thinking.execute();
+    }
+
+    // Stops any search in progress and makes sure its move is never played.
+    private void cancelComputerMove() {
+        gameNumber++;
+        if (engine != null) {
+            engine.stop();
         }
     }
 
@@ -146,19 +288,25 @@ public class ChessController extends MouseAdapter implements ActionListener {
 
     // Starts a new game by clearing and reinitializing the board.
     public void startNewGame() {
+        cancelComputerMove();
         board.resetBoard();
         board.setRedTurn(true);
         view.repaint();
+        startComputerMoveIfDue();
     }
 
     // Saves the current game state to a file named "Save".
+    // The binary format keeps the Ram directions and the Tor/Xor phase, the text one does not.
     private void savingBoardState() {
-        board.saveGame("Save");
+        board.saveBinary("Save");
     }
 
     // Loads the previously saved game state from the file "Save".
+    // Saves from before the binary format are still read from Save.txt.
     private void loadSaveFile() {
-        board.loadGame("Save.txt");
+        cancelComputerMove();
+        board.loadGame(new File("Save.bin").exists() ? "Save.bin" : "Save.txt");
+        startComputerMoveIfDue();
     }
 
 }
@@ -0,0 +1,85 @@
+/**
+ * ChessEvent describes one change to the game, as ChessModel publishes it on its EventBus.
+ *
+ *   MOVE       a piece moved, getMove() is the move packed as in Move
+ *   CAPTURE    the move also took a piece, published right after its MOVE
+ *   TRANSFORM  the Tors and Xors swapped at the end of the turn
+ *   RESIZE     the squares changed size, getSquareSize() is the new size
+ *   GAME_OVER  a Sau was taken, getWinner() is "Red" or "Blue"
+ *   BOARD      the whole board changed, by a new game, a load or a restore
+ *
+ * Events never change once made, so the same one can go to every observer on any thread.
+ */
+public final class ChessEvent {
+    public enum Type {
+        MOVE, CAPTURE, TRANSFORM, RESIZE, GAME_OVER, BOARD
+    }
+
+    private final Type type;
+    private final int move;
+    private final int squareSize;
+    private final String winner;
+
+    private ChessEvent(Type type, int move, int squareSize, String winner) {
+        this.type = type;
+        this.move = move;
+        this.squareSize = squareSize;
+        this.winner = winner;
+    }
+
+    public static ChessEvent move(int move) {
+        return new ChessEvent(Type.MOVE, move, 0, null);
+    }
+
+    public static ChessEvent capture(int move) {
+        return new ChessEvent(Type.CAPTURE, move, 0, null);
+    }
+
+    public static ChessEvent transform() {
+        return new ChessEvent(Type.TRANSFORM, Move.NONE, 0, null);
+    }
+
+    public static ChessEvent resize(int squareSize) {
+        return new ChessEvent(Type.RESIZE, Move.NONE, squareSize, null);
+    }
+
+    public static ChessEvent gameOver(String winner) {
+        return new ChessEvent(Type.GAME_OVER, Move.NONE, 0, winner);
+    }
+
+    public static ChessEvent board() {
+        return new ChessEvent(Type.BOARD, Move.NONE, 0, null);
+    }
+
+    public Type getType() {
+        return type;
+    }
+
+    // The move of a MOVE or CAPTURE event, Move.NONE for the others.
+    public int getMove() {
+        return move;
+    }
+
+    public int getSquareSize() {
+        return squareSize;
+    }
+
+    public String getWinner() {
+        return winner;
+    }
+
+    @Override
+    public String toString() {
+        switch (type) {
+            case MOVE:
+            case CAPTURE:
+                return type + " " + Move.toString(move);
+            case RESIZE:
+                return type + " " + squareSize;
+            case GAME_OVER:
+                return type + " " + winner;
+            default:
+                return type.toString();
+        }
+    }
+}
@@ -1,8 +1,10 @@
-
 /**
  * ChessModel serves as the core of the chess game logic.
  * It manages the game state, including piece positions, turn tracking, 
  * move validation, game saving/loading, and notifying observers about updates.
+ * Changes go out as ChessEvents on an EventBus, which delivers them once per frame.
+ * The rules themselves live in Position, which needs neither Swing nor images.
+ * ChessModel drives it and keeps the Pieces objects drawn by the view in step.
  * The file was jointly coded by everyone in the group
  */
 
@@ -10,26 +12,30 @@ import java.io.BufferedReader;
 import java.io.FileReader;
 import java.io.FileWriter;
 import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Paths;
 import java.util.ArrayList;
+import java.util.Arrays;
 
 public class ChessModel implements Subject {
-    private boolean isRedTurn;
     private ArrayList<Pieces> piecesArr;        
-    private ArrayList<Observer> observers = new ArrayList<>();      
+    private Position position = new Position(); // The game state and rules, piecesArr mirrors it
+    private Pieces[] squares = new Pieces[Position.SQUARES]; // Piece on each square, indexed by Position.square
+    private int[] moveBuffer = new int[MoveList.MAX_MOVES]; // Reused by generateMoves
+    private final EventBus events = new EventBus(); // Delivers the changes to the observers
     public Pieces selectedPiece;       
-    private int turnCount;
     private boolean gameOver;
     private int col = 5;
     private int row = 8;
     private String winner = "";
     private int squareSize;
+    private boolean quiet = false; // Turns off the console messages, for games played without a window
+    private MoveJournal journal; // Keeps the game on disk as it is played, null when not kept
 
     // Written by Zong Xin
     public ChessModel() {
-        this.isRedTurn = true; // White starts first
         this.piecesArr = new ArrayList<>();
         this.selectedPiece = null;
-        this.turnCount = 0;
         this.gameOver = false;
         setSquareSize(65); // Due to the preferred dimension, the initial square size is 65
 
@@ -52,32 +58,34 @@ public class ChessModel implements Subject {
             piece.updateImageSize(squareSize); // Update the image size of each piece
             piece.updatePosition(squareSize); // Update the position of each piece
         }
-        notifyObservers();
+        publish(ChessEvent.resize(newSquareSize));
     }
 
     // Initializes the board with all pieces at their starting positions.
     // Written by Yi Thung
     public void initializeBoard() {
-        // Add Rams for each column
-        for (int i = 0; i < col; i++) {
-            piecesArr.add(new Ram(squareSize, i, 6, true)); // Red team Rams
-            piecesArr.add(new Ram(squareSize, i, 1, false)); // Blue team Rams
-        }
-
-        // Add other pieces    
-        piecesArr.add(new Biz(squareSize, 1, 7, true)); // Red Biz
-        piecesArr.add(new Biz(squareSize, 3, 7, true)); // Red Biz
-        piecesArr.add(new Biz(squareSize, 1, 0, false)); // Blue Biz
-        piecesArr.add(new Biz(squareSize, 3, 0, false)); // Blue Biz
-
-        piecesArr.add(new Tor(squareSize, this, 4, 7, true)); // Red Tor
-        piecesArr.add(new Tor(squareSize, this, 0, 0, false)); // Blue Tor
-
-        piecesArr.add(new Xor(squareSize, this, 4, 0, false)); // Blue Xor
-        piecesArr.add(new Xor(squareSize, this, 0, 7, true)); // Red Xor
+        position.setupInitial();
+        createPieces();
+    }
 
-        piecesArr.add(new Sau(squareSize, 2, 7, true)); // Red Sau
-        piecesArr.add(new Sau(squareSize, 2, 0, false)); // Blue Sau
+    // Creates one Pieces object for every piece in the position.
+    private void createPieces() {
+        piecesArr.clear();
+        Arrays.fill(squares, null);
+        for (int square = 0; square < Position.SQUARES; square++) {
+            int code = position.pieceAt(square);
+            if (code == Position.EMPTY) {
+                continue;
+            }
+            Pieces piece = createPiece(Position.TYPE_NAMES[Position.pieceType(code)], Position.colOf(square),
+                    Position.rowOf(square), Position.pieceIsRed(code));
+            if (piece instanceof Ram && position.isRamReversed(square)) {
+                ((Ram) piece).setReachEnd(true);
+                piece.flipOrientation();
+            }
+            piecesArr.add(piece);
+            squares[square] = piece;
+        }
     }
 
     // ================== Observer Pattern ==================
@@ -86,26 +94,28 @@ public class ChessModel implements Subject {
     // Written Zong Xin
     @Override
     public void addObserver(Observer observer) {
-        observers.add(observer);
+        events.addObserver(observer);
     }
 
     @Override
     public void removeObserver(Observer observer) {
-        observers.remove(observer);
+        events.removeObserver(observer);
     }
 
+    @Override
+    public void publish(ChessEvent event) {
+        events.publish(event);
+    }
+
+    // Tells the observers the whole board has changed.
     @Override
     public void notifyObservers() {
-        for (Observer observer : observers) {
-            observer.update();
-        }
+        publish(ChessEvent.board());
     }
 
     @Override
     public void notifyWinner(String winner) {
-        for (Observer observer : observers) {
-            observer.updateWinner(winner);
-        }
+        publish(ChessEvent.gameOver(winner));
     }
 
     // ================== Game Logic =================
@@ -122,27 +132,91 @@ public class ChessModel implements Subject {
         return selectedPiece;
     }
 
+    // Retrieves the game state that the rules work on.
+    public Position getPosition() {
+        return position;
+    }
+
+    // Checks if any piece stands at a specific board position.
+    public boolean isOccupied(int col, int row) {
+        return position.isOccupied(col, row);
+    }
+
     // Retrieves a piece at a specific board position.
     // Written by Yi Thung
     public Pieces getPiece(int col, int row) {
-        for (Pieces p : piecesArr) {
-            if (p.getCol() == col && p.getRow() == row) {
-                return p;
+        if (!Position.onBoard(col, row)) {
+            return null;
+        }
+        return squares[Position.square(col, row)];
+    }
+
+    // Checks that piecesArr, the square index and the bitboards describe the same board.
+    // Returns true so it can be used as "assert checkConsistency();", which only runs with -ea.
+    public boolean checkConsistency() {
+        int count = 0;
+        for (int square = 0; square < Position.SQUARES; square++) {
+            Pieces p = squares[square];
+            if (p == null) {
+                if (position.isOccupied(square)) {
+                    throw new IllegalStateException("Square " + square + " is empty but marked occupied");
+                }
+                continue;
+            }
+            count++;
+            if (Position.square(p.getCol(), p.getRow()) != square || !piecesArr.contains(p)) {
+                throw new IllegalStateException(p.getName() + " is indexed at the wrong square " + square);
+            }
+            if (position.pieceAt(square) != Position.code(Position.typeOf(p.getName()), p.getIsRed())) {
+                throw new IllegalStateException(p.getName() + " does not match the position at " + square);
             }
+            if (p instanceof Ram && ((Ram) p).isReachEnd() != position.isRamReversed(square)) {
+                throw new IllegalStateException("Ram direction does not match the position at " + square);
+            }
+        }
+        if (count != piecesArr.size() || Long.bitCount(position.getOccupied()) != count) {
+            throw new IllegalStateException("Piece count mismatch: " + piecesArr.size() + " pieces, "
+                    + count + " indexed, " + Long.bitCount(position.getOccupied()) + " in the bitboards");
+        }
+        if (position.getKey() != position.computeKey()) {
+            throw new IllegalStateException("The position key no longer matches the position");
         }
-        return null;
+        if (position.getScore() != position.computeScore() || position.getSwapGain() != position.computeSwapGain()) {
+            throw new IllegalStateException("The evaluation sums no longer match the position");
+        }
+        return true;
     }
 
     // Executes a move by updating the piece's position and checking for captures.
+    // Position plays the move by the rules, the rest mirrors it onto the Pieces objects.
     // Written by Yi Thung
     public void makeMove(MovePiece move) {
+        Pieces piece = move.getPiece();
+        int from = piece.getSquare();
+        int to = Position.square(move.getNewCol(), move.getNewRow());
+        position.makeMove(move.getMove());
+        publish(ChessEvent.move(move.getMove()));
+        if (journal != null) {
+            try {
+                journal.recordMove(move.getMove(), position);
+            } catch (IOException e) {
+                stopJournal(e);
+            }
+        }
+        squares[from] = null;
+        squares[to] = piece;
+
         move.getPiece().setCol(move.getNewCol());
         move.getPiece().setXPos(move.getNewCol() * getSquareSize());
         move.getPiece().setRow(move.getNewRow());
         move.getPiece().setYPos(move.getNewRow() * getSquareSize());
+        if (piece instanceof Ram) {
+            ((Ram) piece).isAtEdge(); // A Ram that reaches either end turns around
+        }
 
         // Check if a piece was captured
         if (move.getCapture() != null) {
+            publish(ChessEvent.capture(move.getMove()));
             gameOver = move.isSau();
             if (gameOver) {
                 boolean winnerColor;
@@ -154,7 +228,6 @@ public class ChessModel implements Subject {
                 }
                 notifyWinner(winner);
                 clearPieces();
-                notifyObservers();
             }
             kill(move);
         }
@@ -162,16 +235,24 @@ public class ChessModel implements Subject {
     }
 
     // Removes a captured piece from the game.
+    // Position has already taken it off the board in makeMove.
     // Written by Yi Thung
     public void kill(MovePiece move) {
-        piecesArr.remove(move.getCapture());
+        Pieces capture = move.getCapture();
+        int square = capture.getSquare();
+        piecesArr.remove(capture);
+        if (squares[square] == capture) {
+            squares[square] = null; // The capturing piece may already stand here
+        }
     }
 
     // Validates if a move is legal according to game rules.
     // Written by Yi Thung
     public boolean isValidMove(MovePiece move) {
-        if (move.getPiece().getIsRed() != isRedTurn) {
-            System.out.println("Invalid move: Not your turn!");
+        if (move.getPiece().getIsRed() != position.isRedTurn()) {
+            if (!quiet) {
+                System.out.println("Invalid move: Not your turn!");
+            }
             return false;
         }
 
@@ -179,7 +260,7 @@ public class ChessModel implements Subject {
             return false; // Move is out of bounds
         }
 
-        if (sameTeam(move.getPiece(), move.getCapture())) {
+        if (position.hasColour(Position.square(move.getNewCol(), move.getNewRow()), position.isRedTurn())) {
             return false; // Cannot capture your own piece
         }
 
@@ -195,20 +276,28 @@ public class ChessModel implements Subject {
     }
 
     // Generates all legal moves for the current piece
+    // Only the selected piece's reachable squares are produced, isValidMove
+    // remains the reference check for a single move.
     // Written by Zong Xin
     public ArrayList<MovePiece> getValidMoves() {
         ArrayList<MovePiece> validMoves = new ArrayList<>();
-        for (int r = 0; r < row; r++) {
-            for (int c = 0; c < col; c++) {
-                MovePiece move = new MovePiece(this, this.getSelectedPiece(), c, r);
-                if (isValidMove(move)) {
-                    validMoves.add(move);
-                }
-            }
+        Pieces piece = getSelectedPiece();
+        if (piece != null && piece.getIsRed() == position.isRedTurn()) {
+            piece.generateMoves(this, validMoves);
         }
         return validMoves;
     }
 
+    // Generates all legal moves for every piece of the side to move.
+    public ArrayList<MovePiece> generateMoves() {
+        int count = position.generateMoves(moveBuffer);
+        ArrayList<MovePiece> moves = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            moves.add(new MovePiece(this, moveBuffer[i]));
+        }
+        return moves;
+    }
+
     // Checks if two pieces belong to the same team.
     // Written by Yi Thung
     public boolean sameTeam(Pieces p1, Pieces p2) {
@@ -222,53 +311,58 @@ public class ChessModel implements Subject {
     // Written by Sarven
     public void clearPieces() {
         piecesArr.clear();
+        Arrays.fill(squares, null);
+        position.clear();
     }
 
     // Save the match into a textfile
     // Written by Sarven
     public void saveGame(String fileName) {
         try (FileWriter writer = new FileWriter(fileName + ".txt")) {
-            writer.write("Is it Red's Turn," + isRedTurn + "\n"); // Save the turn
-            for (Pieces piece : piecesArr) {
-                writer.write(
-                        piece.getName() + "," + piece.getCol() + "," + piece.getRow() + "," + piece.getIsRed() + "\n");
+            position.writeSave(writer); // The turn, then one line per piece
+            if (!quiet) {
+                System.out.println("Game saved to " + fileName + ".txt");
+            }
+        } catch (IOException e) {
+            System.err.println("Error saving game: " + e.getMessage());
+        }
+    }
+
+    // Saves the match in the binary format of PositionCodec, which unlike the text
+    // file also keeps the Ram directions and how close the Tor/Xor swap is.
+    public void saveBinary(String fileName) {
+        try {
+            Files.write(Paths.get(fileName + ".bin"), PositionCodec.encode(position));
+            if (!quiet) {
+                System.out.println("Game saved to " + fileName + ".bin");
             }
-            System.out.println("Game saved to " + fileName + ".txt");
         } catch (IOException e) {
             System.err.println("Error saving game: " + e.getMessage());
         }
     }
 
     // Load the game from the previous saved file
+    // A file ending in .bin is read as written by saveBinary, anything else as text.
+    // The file is read into a copy first, so a file that turns out to be broken
+    // half way leaves the game being played untouched.
     // Written by Sarven
     public void loadGame(String fileName) {
-        clearPieces();
-        try (BufferedReader reader = new BufferedReader(new FileReader(fileName))) {
-            String line = reader.readLine();
-            if (line.startsWith("Is")) {
-                isRedTurn = Boolean.parseBoolean(line.split(",")[1]); // Restore turn
-            }
-            while ((line = reader.readLine()) != null) {
-                String[] parts = line.split(",");
-                String pieceName = parts[0];
-                int col = Integer.parseInt(parts[1]);
-                int row = Integer.parseInt(parts[2]);
-                boolean isRed = Boolean.parseBoolean(parts[3]);
-                Pieces piece = createPiece(pieceName, col, row, isRed);
-                if (piece != null) {
-                    piece.setFlipped(!isRedTurn); // Restore flipped state
-                    piecesArr.add(piece);
+        Position loaded = new Position(position); // A text save keeps the turn count, as it has none
+        try {
+            if (fileName.endsWith(".bin")) {
+                PositionCodec.decode(Files.readAllBytes(Paths.get(fileName)), loaded);
+            } else {
+                try (BufferedReader reader = new BufferedReader(new FileReader(fileName))) {
+                    loaded.readSave(reader); // Restores the turn and the pieces
                 }
             }
-            // Adjust board flip state after loading
-            if (!isRedTurn) {
-                flipImage();
-                flipImage();
-            }
-            notifyObservers();
+        } catch (IOException | IllegalArgumentException | IndexOutOfBoundsException e) {
+            System.err.println("Error loading game: " + e);
+            return;
+        }
+        restorePosition(loaded);
+        if (!quiet) {
             System.out.println("Game loaded from " + fileName);
-        } catch (IOException e) {
-            System.err.println("Error loading game: " + e.getMessage());
         }
     }
 
@@ -295,66 +389,108 @@ public class ChessModel implements Subject {
     // Written by Sarven
     public void resetBoard() {
         clearPieces();
-        initializeBoard();
-        this.turnCount = 0; // Reset turn count
-        this.isRedTurn = true; // Ensure Red always starts after restart
+        initializeBoard(); // Also resets the turn count and lets Red start
         this.gameOver = false;
+        this.winner = "";
+        assert checkConsistency();
+        startJournal();
         notifyObservers();
     }
 
-    // It will update every existing pieces to the opposite side of the board
-    // Written by Aveeniskh
-    public void flipBoard() {
-        for (Pieces piece : piecesArr) {
-            piece.setCol((col - 1) - piece.getCol());
-            piece.setRow((row - 1) - piece.getRow());
-            piece.setXPos(piece.getCol() * squareSize);
-            piece.setYPos(piece.getRow() * squareSize);
-            piece.flipOrientation();
-        }
-        notifyObservers();
-    }
-
-    // It will update the image's orientation when the pieces are loaded into the
-    // save file during blue's turn
-    // Written by Zong Xin
-    public void flipImage() {
-        for (Pieces piece : piecesArr) {
-            piece.flipOrientation();
-        }
-    }
-
     // It manages what happens when the turn end.
+    // Position has already passed the turn, counted it and swapped its Tors and Xors,
+    // this brings the pieces on screen up to date.
+    // The board keeps its coordinates, the view turns it around for Blue when drawing.
     // Written by Sarven
     public void endTurn() {
-        // It toggles isRedTurn to keep track of which player's turn
-        isRedTurn = !isRedTurn;
-
         // It makes Xor and Tor pieces switch place after every 2 turns (Blue move twice
-        // and Red move twice) and increment the
-        // turn count after each turn.
-        if (++turnCount % 4 == 0) {
+        // and Red move twice).
+        if (position.getTurnCount() % 4 == 0) {
             for (int i = 0; i < piecesArr.size(); i++) {
                 Pieces piece = piecesArr.get(i);
+                Pieces swapped = null;
                 if (piece instanceof Tor) {
-                    piecesArr.set(i, new Xor(squareSize, this, piece.getCol(), piece.getRow(), piece.getIsRed()));
+                    swapped = new Xor(squareSize, this, piece.getCol(), piece.getRow(), piece.getIsRed());
                 } else if (piece instanceof Xor) {
-                    piecesArr.set(i, new Tor(squareSize, this, piece.getCol(), piece.getRow(), piece.getIsRed()));
+                    swapped = new Tor(squareSize, this, piece.getCol(), piece.getRow(), piece.getIsRed());
+                }
+                if (swapped != null) {
+                    piecesArr.set(i, swapped);
+                    squares[Position.square(swapped.getCol(), swapped.getRow())] = swapped;
                 }
             }
+            publish(ChessEvent.transform());
         }
 
-        // Once the necessary data has been updated, it will flip the board so that the
-        // current player's turn will
-        // be displayed at the bottom of the screen.
-        flipBoard();
-        System.out.println("Turn ended. Current turn: " + (isRedTurn ? "Red" : "Blue"));
+        assert checkConsistency(); // The MOVE event of the move already tells the observers
+        if (!quiet) {
+            System.out.println("Turn ended. Current turn: " + (position.isRedTurn() ? "Red" : "Blue"));
+        }
     }
 
     // Setter to get update who's turn
     // Written by Sarven
     public void setRedTurn(boolean isRedTurn) {
-        this.isRedTurn = isRedTurn;
+        position.setRedTurn(isRedTurn);
+    }
+
+    public boolean isRedTurn() {
+        return position.isRedTurn();
+    }
+
+    public int getTurnCount() {
+        return position.getTurnCount();
+    }
+
+    public boolean isGameOver() {
+        return gameOver;
+    }
+
+    // "Red" or "Blue" once a Sau has been captured, empty until then.
+    public String getWinner() {
+        return winner;
+    }
+
+    // Continues a game from the given position, for example one recovered from the journal.
+    public void restorePosition(Position restored) {
+        clearPieces();
+        position = new Position(restored);
+        createPieces();
+        gameOver = false;
+        winner = "";
+        assert checkConsistency();
+        startJournal();
+        notifyObservers();
+    }
+
+    // Keeps every move of the game from now on in the journal, starting with the current position.
+    public void setJournal(MoveJournal journal) {
+        this.journal = journal;
+        startJournal();
+    }
+
+    // Begins the journal again with the current position, after a new game or a load.
+    private void startJournal() {
+        if (journal == null) {
+            return;
+        }
+        try {
+            journal.startGame(position);
+        } catch (IOException e) {
+            stopJournal(e);
+        }
+    }
+
+    // A journal that cannot be written is given up on, the game carries on without it.
+    private void stopJournal(IOException e) {
+        System.err.println("Error writing the journal, moves are no longer kept: " + e.getMessage());
+        journal = null;
+    }
+
+    // Stops the model printing every turn, save and load, for games nobody is watching.
+    // Errors still go to System.err.
+    public void setQuiet(boolean quiet) {
+        this.quiet = quiet;
     }
 
 }
@@ -4,11 +4,29 @@
 import javax.swing.*;
 import java.awt.*;
 import java.awt.event.*;
+import java.awt.image.BufferedImage;
+import java.awt.image.VolatileImage;
 import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Executor;
 
 public class ChessView extends JPanel implements Observer {    
+    private static final int RESIZE_DELAY = 150; // Milliseconds without a resize before the model is updated
+    private static final Color HIGHLIGHT = new Color(251, 255, 101, 90); // Over the squares the selected piece can reach
+    private static final Color HINT_BACKGROUND = new Color(0, 0, 0, 160);
+
     private ChessModel board;
     private ChessController controller;     
+    private ArrayList<MovePiece> highlightedMoves = new ArrayList<>(); // Valid moves of the selected piece
+    private Pieces highlightedPiece; // The piece highlightedMoves was computed for
+    private boolean highlightsValid = false; // Cleared whenever the model changes
+    private Timer resizeTimer; // Restarted by every resize event, so a burst of them is handled once
+    private boolean paintedFlipped; // Which way round the board was last painted
+    // The empty board, drawn once per square size and copied onto the screen in one call.
+    // A VolatileImage lives in video memory where there is a screen, otherwise a BufferedImage is used.
+    private VolatileImage boardImage;
+    private BufferedImage headlessBoardImage;
+    private int boardImageSquareSize;
 
     // Constructor for ChessView
     public ChessView(ChessModel model) {
@@ -17,12 +35,17 @@ public class ChessView extends JPanel implements Observer {
         // Register the view as an observer of the model
         this.board.addObserver(this);
 
+        // Only tell the model about the new size once the window has stopped changing,
+        // until then the board is drawn at the new size with the old sprites stretched.
+        resizeTimer = new Timer(RESIZE_DELAY, e -> board.setSquareSize(getSquareSize()));
+        resizeTimer.setRepeats(false);
+
         // Add a listener to handle resizing the panel
         this.addComponentListener(new ComponentAdapter() {
             @Override
             public void componentResized(ComponentEvent e) {
-                // Notify model to update square size
-                board.setSquareSize(getSquareSize());
+                // Notify model to update square size once the resizing stops
+                resizeTimer.restart();
             }
         });
     }
@@ -39,9 +62,70 @@ public class ChessView extends JPanel implements Observer {
     @Override
     public void update() {
         // Will be called whenever the model notifies of a change
+        highlightsValid = false; // The position may have changed, so the cached moves are stale
         repaint();
     }
 
+    // Repaints only the squares the moves of the frame touched, or everything when the
+    // board turned around or changed as a whole.
+    @Override
+    public void onEvents(List<ChessEvent> events) {
+        highlightsValid = false;
+        boolean whole = isFlipped() != paintedFlipped;
+        String winner = null;
+        for (ChessEvent event : events) {
+            switch (event.getType()) {
+                case MOVE:
+                case CAPTURE:
+                    break;
+                case GAME_OVER:
+                    winner = event.getWinner();
+                    whole = true; // The pieces are taken off the board
+                    break;
+                default:
+                    whole = true;
+                    break;
+            }
+        }
+        if (whole) {
+            repaint();
+        } else {
+            for (ChessEvent event : events) {
+                if (event.getType() == ChessEvent.Type.MOVE) {
+                    repaintSquare(Move.from(event.getMove()));
+                    repaintSquare(Move.to(event.getMove()));
+                }
+            }
+            repaintHint();
+        }
+        if (winner != null) {
+            updateWinner(winner);
+        }
+    }
+
+    // The model's events come on the Swing event thread, where painting and dialogs belong.
+    @Override
+    public Executor executor() {
+        return SwingUtilities::invokeLater;
+    }
+
+    // Computes the valid moves of the selected piece once and keeps them for later repaints.
+    // The controller calls this when a piece is picked up.
+    public void refreshHighlights() {
+        highlightedPiece = board.getSelectedPiece();
+        highlightedMoves = controller.getValidMovesForSelectedPiece();
+        highlightsValid = true;
+    }
+
+    // Returns the cached highlights, recomputing them only if the position or
+    // the selected piece has changed since they were computed.
+    private ArrayList<MovePiece> getHighlightedMoves() {
+        if (!highlightsValid || highlightedPiece != board.getSelectedPiece()) {
+            refreshHighlights();
+        }
+        return highlightedMoves;
+    }
+
     @Override
     public void updateWinner(String winner) {
         // Display the winner when the game ends
@@ -57,32 +141,182 @@ public class ChessView extends JPanel implements Observer {
         int maxRow = 8;
         int maxCol = 5;
         int squareSize = getSquareSize();
-
-        // Draw the chessboard
-        for (int r = 0; r < maxRow; r++) {
-            for (int c = 0; c < maxCol; c++) {
-                g2.setColor((c + r) % 2 == 0 ? Color.WHITE : Color.BLACK);
-                g2.fillRect(c * squareSize, r * squareSize, squareSize, squareSize);
-            }
+        boolean flipped = isFlipped();
+        if (flipped != paintedFlipped) {
+            paintedFlipped = flipped;
+            repaint(); // The board turned around, so every square changed, not just this region
         }
+        // Only what overlaps the region being repainted is drawn, so a small region costs little
+        Rectangle clip = g2.getClipBounds();
+        if (clip == null) {
+            clip = new Rectangle(0, 0, getWidth(), getHeight());
+        }
+
+        // The layers are drawn bottom up: the board, the pieces, then the highlights and the hint
+        drawBoard(g2, squareSize);
 
         // Draw the pieces
+        // Pieces stand on their squares at the current size, only the dragged one uses its pixel position.
+        // Sprites are scaled in the background, until one is ready a stand-in is drawn.
         ArrayList<Pieces> pieceForRender = controller.getPiecesForRender();
+        Pieces dragged = board.getSelectedPiece();
         for (Pieces p : pieceForRender) {
-            if (p.getCurrentImage() != null) {
-                g2.drawImage(p.getCurrentImage(), p.getXPos(), p.getYPos(), squareSize, squareSize, null);
+            int x = (p == dragged) ? p.getXPos() : mapCol(p.getCol()) * squareSize;
+            int y = (p == dragged) ? p.getYPos() : mapRow(p.getRow()) * squareSize;
+            if (!clip.intersects(x, y, squareSize, squareSize)) {
+                continue;
+            }
+            BufferedImage image = p.requestImage(flipped, this::repaint);
+            if (image != null) {
+                g2.drawImage(image, x, y, squareSize, squareSize, null);
+            } else {
+                drawPlaceholder(g2, p, x, y, squareSize);
             }
         }
 
         // Highlight valid moves for the selected piece
-        ArrayList<MovePiece> validMoves = controller.getValidMovesForSelectedPiece();
+        ArrayList<MovePiece> validMoves = getHighlightedMoves();
 
         for (MovePiece piece : validMoves) {
-            int x = piece.getNewCol() * squareSize;
-            int y = piece.getNewRow() * squareSize;
-            g2.setColor(new Color(251, 255, 101, 90));
+            int x = mapCol(piece.getNewCol()) * squareSize;
+            int y = mapRow(piece.getNewRow()) * squareSize;
+            if (!clip.intersects(x, y, squareSize, squareSize)) {
+                continue;
+            }
+            g2.setColor(HIGHLIGHT);
             g2.fillRect(x, y, squareSize, squareSize);
         }
+
+        // Once few enough pieces are left, show the tablebase's verdict along the bottom
+        String hint = controller.getTablebaseHint();
+        int height = hintHeight();
+        int y = maxRow * squareSize - height;
+        if (hint != null && clip.intersects(0, y, maxCol * squareSize, height)) {
+            g2.setColor(HINT_BACKGROUND);
+            g2.fillRect(0, y, maxCol * squareSize, height);
+            g2.setColor(Color.WHITE);
+            g2.drawString(hint, 4, y + g2.getFontMetrics().getAscent() + 2);
+        }
+    }
+
+    // Copies the cached board onto the screen, drawing it again first if the square size
+    // changed or the video memory holding it was lost.
+    private void drawBoard(Graphics2D g2, int squareSize) {
+        if (squareSize <= 0) {
+            return;
+        }
+        int width = Position.COLS * squareSize;
+        int height = Position.ROWS * squareSize;
+        GraphicsConfiguration gc = getGraphicsConfiguration();
+        if (gc == null || GraphicsEnvironment.isHeadless()) {
+            if (headlessBoardImage == null || boardImageSquareSize != squareSize) {
+                headlessBoardImage = new BufferedImage(width, height, BufferedImage.TYPE_INT_RGB);
+                boardImageSquareSize = squareSize;
+                Graphics2D g = headlessBoardImage.createGraphics();
+                renderBoard(g, squareSize);
+                g.dispose();
+            }
+            g2.drawImage(headlessBoardImage, 0, 0, null);
+            return;
+        }
+        do {
+            int status = boardImage == null || boardImageSquareSize != squareSize
+                    ? VolatileImage.IMAGE_INCOMPATIBLE : boardImage.validate(gc);
+            if (status == VolatileImage.IMAGE_INCOMPATIBLE) {
+                if (boardImage != null) {
+                    boardImage.flush();
+                }
+                boardImage = gc.createCompatibleVolatileImage(width, height);
+                boardImageSquareSize = squareSize;
+                renderBoard(boardImage);
+            } else if (status == VolatileImage.IMAGE_RESTORED) {
+                renderBoard(boardImage); // Back in video memory, but empty
+            }
+            g2.drawImage(boardImage, 0, 0, null);
+        } while (boardImage.contentsLost());
+    }
+
+    private void renderBoard(VolatileImage image) {
+        Graphics2D g = image.createGraphics();
+        renderBoard(g, boardImageSquareSize);
+        g.dispose();
+    }
+
+    // Draws the empty board, light and dark squares, in screen coordinates,
+    // which are the same whichever way round the board is shown.
+    private static void renderBoard(Graphics2D g, int squareSize) {
+        for (int r = 0; r < Position.ROWS; r++) {
+            for (int c = 0; c < Position.COLS; c++) {
+                g.setColor((c + r) % 2 == 0 ? Color.WHITE : Color.BLACK);
+                g.fillRect(c * squareSize, r * squareSize, squareSize, squareSize);
+            }
+        }
+    }
+
+    // Draws a plain disc in the team colour with the piece's initial,
+    // used while its sprite is still being loaded.
+    private void drawPlaceholder(Graphics2D g2, Pieces p, int x, int y, int squareSize) {
+        int inset = squareSize / 8;
+        g2.setColor(p.getIsRed() ? Color.RED : Color.BLUE);
+        g2.fillOval(x + inset, y + inset, squareSize - 2 * inset, squareSize - 2 * inset);
+        g2.setColor(Color.WHITE);
+        g2.drawString(p.getName().substring(0, 1), x + squareSize / 2 - 3, y + squareSize / 2 + 4);
+    }
+
+    // ================== Dirty Regions ==================
+    // Changes repaint only the rectangles they touch, so the cost of a frame
+    // does not grow with the size of the window.
+
+    // Repaints one board square, given as a Position square number.
+    public void repaintSquare(int square) {
+        int squareSize = getSquareSize();
+        repaint(mapCol(Position.colOf(square)) * squareSize, mapRow(Position.rowOf(square)) * squareSize,
+                squareSize, squareSize);
+    }
+
+    // Repaints a square-sized area at a pixel position, such as where a dragged piece is or was drawn.
+    public void repaintAt(int x, int y) {
+        int squareSize = getSquareSize();
+        repaint(x, y, squareSize, squareSize);
+    }
+
+    // Repaints the squares highlighted for the selected piece, to show or clear them.
+    public void repaintHighlights() {
+        for (MovePiece move : highlightedMoves) {
+            repaintSquare(Position.square(move.getNewCol(), move.getNewRow()));
+        }
+    }
+
+    // Repaints the strip along the bottom of the board where the tablebase hint is shown.
+    private void repaintHint() {
+        int squareSize = getSquareSize();
+        int height = hintHeight();
+        repaint(0, Position.ROWS * squareSize - height, Position.COLS * squareSize, height);
+    }
+
+    private int hintHeight() {
+        return getFontMetrics(getFont()).getHeight() + 4;
+    }
+
+    // Whether the board is drawn upside down, with Blue at the bottom.
+    // The side to move is shown at the bottom of the screen, except against the
+    // computer, where the player's side stays at the bottom.
+    public boolean isFlipped() {
+        Boolean computerIsRed = (controller != null) ? controller.getComputerIsRed() : null;
+        if (computerIsRed != null) {
+            return computerIsRed;
+        }
+        return !board.isRedTurn();
+    }
+
+    // Converts a board column to a screen column or back, the conversion is its own inverse.
+    public int mapCol(int col) {
+        return isFlipped() ? Position.COLS - 1 - col : col;
+    }
+
+    // Converts a board row to a screen row or back, the conversion is its own inverse.
+    public int mapRow(int row) {
+        return isFlipped() ? Position.ROWS - 1 - row : row;
     }
 
     // Calculates the size of each square based on the window’s dimensions,
@@ -0,0 +1,303 @@
+/**
+ * EndgameTable holds the solved value of every position with one set of material:
+ * both Saus plus the same few other pieces, the "extras". TablebaseGenerator fills
+ * the tables and Tablebases looks positions up in them.
+ *
+ * Every position has one byte, found in O(1) by index(Position):
+ *   0        no side can force a Sau capture
+ *   n odd    the side to move takes the enemy Sau in n plies
+ *   n even   the side to move loses its Sau in n plies
+ *   INVALID  not a position, two pieces on a square or a duplicate ordering
+ *
+ * Tors and Xors keep turning into each other, so an extra is a Ram, a Biz or a
+ * slider, and a slider stores whether it is a Tor or a Xor right now. The index
+ * is built from, most significant first:
+ *   side to move (2), turn count modulo 4 (4, only with sliders, since nothing
+ *   else cares when the swap comes), Red Sau square (40), Blue Sau square (40),
+ *   then per extra its square (40) times its variant (2 for a Ram heading back
+ *   or not and for a slider being a Tor or a Xor, 1 for a Biz).
+ * Extras of the same kind are stored in increasing square order.
+ *
+ * Tables are files of HEADER_BYTES followed by one byte per index, mapped into
+ * memory, so opening one costs nothing and the operating system pages it in.
+ */
+
+import java.io.IOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+
+public class EndgameTable {
+    public static final int INVALID = 255;
+    public static final int MAX_DISTANCE = 254; // The largest distance a byte can hold besides INVALID
+    public static final int HEADER_BYTES = 16;
+    private static final int MAGIC = 0x43485442; // "CHTB" in ASCII
+
+    // Kinds of extra piece, Red ones first: colour * CLASSES + class
+    public static final int CLASSES = 3;
+    public static final int RAM = 0;
+    public static final int BIZ = 1;
+    public static final int SLIDER = 2;
+    public static final int KINDS = 2 * CLASSES;
+    public static final String KIND_LETTERS = "RBSrbs"; // Upper case for Red, lower case for Blue
+
+    private final int[] extras; // Kinds of the extra pieces, in increasing order
+    private final boolean hasSlider;
+    private final long size;
+    private MappedByteBuffer data; // Null until opened or created
+
+    // Creates the table for the given extra kinds, in any order.
+    public EndgameTable(int[] extraKinds) {
+        extras = extraKinds.clone();
+        Arrays.sort(extras);
+        boolean slider = false;
+        long n = 2L * Position.SQUARES * Position.SQUARES;
+        for (int kind : extras) {
+            slider |= kindClass(kind) == SLIDER;
+            n *= Position.SQUARES * variants(kind);
+        }
+        hasSlider = slider;
+        size = hasSlider ? n * 4 : n;
+    }
+
+    // ================== Material ==================
+
+    public static int kindClass(int kind) {
+        return kind % CLASSES;
+    }
+
+    public static boolean kindIsRed(int kind) {
+        return kind < CLASSES;
+    }
+
+    // The kind of a piece type and colour, -1 for a Sau.
+    public static int kindOf(int type, boolean isRed) {
+        int cls;
+        switch (type) {
+            case Position.RAM:
+                cls = RAM;
+                break;
+            case Position.BIZ:
+                cls = BIZ;
+                break;
+            case Position.TOR:
+            case Position.XOR:
+                cls = SLIDER;
+                break;
+            default:
+                return -1;
+        }
+        return (isRed ? 0 : CLASSES) + cls;
+    }
+
+    private static int variants(int kind) {
+        return kindClass(kind) == BIZ ? 1 : 2;
+    }
+
+    // A name for the material, "sau" followed by one letter per extra, for example "sauBs"
+    // for a red Biz against a blue slider. Also the name of the table's file.
+    public String getName() {
+        StringBuilder name = new StringBuilder("sau");
+        for (int kind : extras) {
+            name.append(KIND_LETTERS.charAt(kind));
+        }
+        return name.toString();
+    }
+
+    // A number for the material: two bits per kind counting its pieces. Two tables
+    // have the same material key exactly when they have the same extras.
+    public int getMaterialKey() {
+        int key = 0;
+        for (int kind : extras) {
+            key += 1 << (2 * kind);
+        }
+        return key;
+    }
+
+    // The material key of a position, as getMaterialKey, or -1 if it does not have
+    // exactly one Sau per side or more than three extras of one kind.
+    public static int materialKey(Position pos) {
+        if (Long.bitCount(pos.getPieces(Position.SAU, true)) != 1
+                || Long.bitCount(pos.getPieces(Position.SAU, false)) != 1) {
+            return -1;
+        }
+        int key = 0;
+        for (int kind = 0; kind < KINDS; kind++) {
+            int count = Long.bitCount(kindMask(pos, kind));
+            if (count > 3) {
+                return -1;
+            }
+            key += count << (2 * kind);
+        }
+        return key;
+    }
+
+    public int getExtraCount() {
+        return extras.length;
+    }
+
+    public int[] getExtras() {
+        return extras.clone();
+    }
+
+    public long size() {
+        return size;
+    }
+
+    // ================== Indexing ==================
+
+    // The index of a position with this table's material.
+    public long index(Position pos) {
+        long index = pos.isRedTurn() ? 0 : 1;
+        if (hasSlider) {
+            index = index * 4 + (pos.getTurnCount() & 3);
+        }
+        index = index * Position.SQUARES + Long.numberOfTrailingZeros(pos.getPieces(Position.SAU, true));
+        index = index * Position.SQUARES + Long.numberOfTrailingZeros(pos.getPieces(Position.SAU, false));
+        int i = 0;
+        while (i < extras.length) {
+            int kind = extras[i];
+            long mask = kindMask(pos, kind);
+            // Extras of one kind follow each other in the signature, in square order
+            while (i < extras.length && extras[i] == kind) {
+                int square = Long.numberOfTrailingZeros(mask);
+                mask &= mask - 1;
+                int v = variants(kind);
+                index = index * Position.SQUARES * v + square * v + variant(pos, kind, square);
+                i++;
+            }
+        }
+        return index;
+    }
+
+    // Sets up the position with the given index. Returns false, leaving the position
+    // in any state, if the index is INVALID.
+    public boolean decode(long index, Position pos) {
+        pos.clear();
+        // The extras are the least significant digits, so they come out first, last extra first
+        int nextSquare = Position.SQUARES; // Square of the extra after this one, if it is of the same kind
+        for (int i = extras.length - 1; i >= 0; i--) {
+            int kind = extras[i];
+            int v = variants(kind);
+            int digit = (int) (index % (Position.SQUARES * v));
+            index /= Position.SQUARES * v;
+            int square = digit / v;
+            int variant = digit % v;
+            boolean sameKindAfter = i < extras.length - 1 && extras[i + 1] == kind;
+            if (pos.isOccupied(square) || (sameKindAfter && square > nextSquare)) {
+                return false;
+            }
+            nextSquare = square;
+            boolean isRed = kindIsRed(kind);
+            switch (kindClass(kind)) {
+                case RAM:
+                    pos.put(Position.RAM, isRed, square);
+                    pos.setRamReversed(square, variant == 1);
+                    break;
+                case BIZ:
+                    pos.put(Position.BIZ, isRed, square);
+                    break;
+                default:
+                    pos.put(variant == 0 ? Position.TOR : Position.XOR, isRed, square);
+                    break;
+            }
+        }
+        int blueSau = (int) (index % Position.SQUARES);
+        index /= Position.SQUARES;
+        int redSau = (int) (index % Position.SQUARES);
+        index /= Position.SQUARES;
+        int phase = 0;
+        if (hasSlider) {
+            phase = (int) (index % 4);
+            index /= 4;
+        }
+        if (redSau == blueSau || pos.isOccupied(redSau) || pos.isOccupied(blueSau)) {
+            return false;
+        }
+        pos.put(Position.SAU, true, redSau);
+        pos.put(Position.SAU, false, blueSau);
+        pos.setRedTurn(index == 0);
+        pos.setTurnCount(phase);
+        return true;
+    }
+
+    private static long kindMask(Position pos, int kind) {
+        boolean isRed = kindIsRed(kind);
+        switch (kindClass(kind)) {
+            case RAM:
+                return pos.getPieces(Position.RAM, isRed);
+            case BIZ:
+                return pos.getPieces(Position.BIZ, isRed);
+            default:
+                return pos.getPieces(Position.TOR, isRed) | pos.getPieces(Position.XOR, isRed);
+        }
+    }
+
+    private static int variant(Position pos, int kind, int square) {
+        switch (kindClass(kind)) {
+            case RAM:
+                return pos.isRamReversed(square) ? 1 : 0;
+            case SLIDER:
+                return Position.pieceType(pos.pieceAt(square)) == Position.XOR ? 1 : 0;
+            default:
+                return 0;
+        }
+    }
+
+    // ================== Values ==================
+
+    public int get(long index) {
+        return data.get(HEADER_BYTES + (int) index) & 0xFF;
+    }
+
+    public void set(long index, int value) {
+        data.put(HEADER_BYTES + (int) index, (byte) value);
+    }
+
+    // The value of a position with this table's material.
+    public int probe(Position pos) {
+        return get(index(pos));
+    }
+
+    // The longest distance to a Sau capture in the table, kept in the header.
+    public int getMaxDistance() {
+        return data.get(8) & 0xFF;
+    }
+
+    // ================== Files ==================
+
+    // Maps an existing table file for reading.
+    public void open(Path file) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            if (channel.size() != HEADER_BYTES + size) {
+                throw new IOException("Table " + file + " has the wrong size for " + getName());
+            }
+            data = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+        }
+        if (data.getInt(0) != MAGIC || data.getInt(4) != getMaterialKey()) {
+            data = null;
+            throw new IOException("Not the table for " + getName() + ": " + file);
+        }
+    }
+
+    // Creates a table file full of zeros and maps it for writing.
+    public void create(Path file) throws IOException {
+        if (HEADER_BYTES + size > Integer.MAX_VALUE) {
+            throw new IOException("Table " + getName() + " needs " + size + " bytes, more than one file can map");
+        }
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.CREATE,
+                StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+            data = channel.map(FileChannel.MapMode.READ_WRITE, 0, HEADER_BYTES + size);
+        }
+        data.putInt(0, MAGIC);
+        data.putInt(4, getMaterialKey());
+    }
+
+    // Records the longest distance and writes the table out to its file.
+    public void finish(int maxDistance) {
+        data.put(8, (byte) maxDistance);
+        data.force();
+    }
+}
@@ -0,0 +1,375 @@
+/**
+ * Engine picks moves for either side with a negamax alpha-beta search.
+ * It deepens one ply at a time until the depth or time limit runs out and keeps
+ * the best move of the last finished iteration.
+ * The search runs on its own copy of the Position, using the same rules as the game:
+ * the Ram bounce, the Tor/Xor swap every fourth turn and the capture of a Sau,
+ * which ends the game.
+ * Results are kept in a TranspositionTable, so positions reached again by another
+ * move order, or in the next iteration, are not searched twice.
+ * Below the root the moves come from a MovePicker, which tries the hash move, the
+ * captures and the killer moves before it generates the other quiet moves, ordered by
+ * how often they caused a cutoff so far.
+ * An Engine is not thread safe, each search thread needs its own.
+ */
+
+import java.util.Arrays;
+
+public class Engine {
+    public static final int MAX_PLY = 100; // Deepest the search, including captures, will go
+    public static final int WIN = 100000; // Score for capturing the enemy Sau, less one per ply it takes
+    // Scores from here on up are forced Sau captures, found by the search within MAX_PLY
+    // or promised by a tablebase up to EndgameTable.MAX_DISTANCE plies further on
+    public static final int WIN_BOUND = WIN - (MAX_PLY + EndgameTable.MAX_DISTANCE + 1);
+    public static final int DRAW = 0; // Score when the side to move has no moves
+    private static final int INFINITY = WIN + 1;
+    private static final int DEFAULT_TABLE_MB = 16;
+    private static final int HISTORY_LIMIT = 1 << 20; // History counts are halved when one passes this
+
+    private final MovePicker[] pickers = new MovePicker[MAX_PLY]; // One per ply
+    private final int[][] killers = new int[MAX_PLY][2]; // Quiet moves that caused a cutoff at each ply, newest first
+    private final int[] history = new int[MovePicker.HISTORY_SIZE]; // Cutoffs caused by each quiet move, see MovePicker
+    private final TranspositionTable table;
+    private Tablebases tablebases; // Null, or endgames whose outcome is known
+    private long nodes;
+    private long deadline; // System.nanoTime() at which to stop
+    private volatile boolean stopped;
+
+    // The outcome of a search.
+    public static class SearchResult {
+        private final int bestMove;
+        private final int score;
+        private final int depth;
+        private final long nodes;
+        private final long millis;
+
+        public SearchResult(int bestMove, int score, int depth, long nodes, long millis) {
+            this.bestMove = bestMove;
+            this.score = score;
+            this.depth = depth;
+            this.nodes = nodes;
+            this.millis = millis;
+        }
+
+        // The move to play, Move.NONE if the side to move has none.
+        public int getBestMove() {
+            return bestMove;
+        }
+
+        public int getScore() {
+            return score;
+        }
+
+        // The deepest iteration that finished.
+        public int getDepth() {
+            return depth;
+        }
+
+        public long getNodes() {
+            return nodes;
+        }
+
+        public long getMillis() {
+            return millis;
+        }
+
+        public long getNodesPerSecond() {
+            return nodes * 1000 / Math.max(1, millis);
+        }
+
+        @Override
+        public String toString() {
+            return "depth " + depth + " score " + score + " nodes " + nodes + " time " + millis + " ms nps "
+                    + getNodesPerSecond() + " best " + (bestMove == Move.NONE ? "none" : Move.toString(bestMove));
+        }
+    }
+
+    public Engine() {
+        this(new TranspositionTable(DEFAULT_TABLE_MB));
+    }
+
+    // Creates an engine that keeps its results in the given table.
+    public Engine(TranspositionTable table) {
+        this.table = table;
+        for (int ply = 0; ply < MAX_PLY; ply++) {
+            pickers[ply] = new MovePicker();
+        }
+    }
+
+    public TranspositionTable getTable() {
+        return table;
+    }
+
+    // Searches the position for at most maxDepth plies or timeMillis milliseconds,
+    // whichever runs out first. The position is left as it was.
+    public SearchResult search(Position position, int maxDepth, long timeMillis) {
+        table.newSearch();
+        stopped = false;
+        return search(position, maxDepth, timeMillis, 1);
+    }
+
+    // The iterative deepening loop, starting at firstDepth.
+    // ParallelSearch runs several of these on one table, starting at different depths
+    // so the threads spread out over the tree instead of all searching the same nodes.
+    // The stop flag is not cleared here, so a stop that comes before the search starts still counts.
+    SearchResult search(Position position, int maxDepth, long timeMillis, int firstDepth) {
+        Position pos = new Position(position);
+        long start = System.nanoTime();
+        deadline = timeMillis > 0 ? start + timeMillis * 1_000_000 : Long.MAX_VALUE;
+        nodes = 0;
+        for (int[] plyKillers : killers) {
+            Arrays.fill(plyKillers, Move.NONE);
+        }
+        for (int i = 0; i < history.length; i++) {
+            history[i] /= 4; // Still a hint in the next position, but not for long
+        }
+
+        int[] rootMoves = new int[MoveList.MAX_MOVES];
+        int count = pos.generateMoves(rootMoves);
+        int bestMove = count > 0 ? rootMoves[0] : Move.NONE;
+        int bestScore = count > 0 ? 0 : DRAW;
+        int finishedDepth = 0;
+
+        for (int depth = firstDepth; depth <= Math.min(maxDepth, MAX_PLY - 1) && count > 0; depth++) {
+            orderMoves(rootMoves, count, bestMove);
+            int alpha = -INFINITY;
+            int iterationBest = Move.NONE;
+            for (int i = 0; i < count; i++) {
+                pos.makeMove(rootMoves[i]);
+                int score = -search(pos, depth - 1, -INFINITY, -alpha, 1);
+                pos.undoMove(rootMoves[i]);
+                if (stopped) {
+                    break;
+                }
+                if (score > alpha) {
+                    alpha = score;
+                    iterationBest = rootMoves[i];
+                }
+            }
+            if (stopped) {
+                break; // The unfinished iteration cannot be trusted
+            }
+            bestMove = iterationBest;
+            bestScore = alpha;
+            finishedDepth = depth;
+            table.store(pos.getKey(), bestMove, bestScore, depth, TranspositionTable.EXACT);
+            if (Math.abs(bestScore) >= WIN_BOUND) {
+                break; // A forced Sau capture has been found for one side
+            }
+        }
+
+        long millis = (System.nanoTime() - start) / 1_000_000;
+        return new SearchResult(bestMove, bestScore, finishedDepth, nodes, millis);
+    }
+
+    // Asks a running search to finish as soon as possible, from any thread.
+    public void stop() {
+        stopped = true;
+    }
+
+    // Lets the search look up endgames in the tablebases instead of searching them.
+    public void setTablebases(Tablebases tablebases) {
+        this.tablebases = tablebases;
+    }
+
+    // Lets the next search run after stop was called.
+    void clearStop() {
+        stopped = false;
+    }
+
+    // Nodes visited by the current or last search, safe to read once it has returned.
+    public long getNodes() {
+        return nodes;
+    }
+
+    // Negamax alpha-beta: the score of the position for the side to move.
+    private int search(Position pos, int depth, int alpha, int beta, int ply) {
+        if (checkStop()) {
+            return 0;
+        }
+        if (pos.getPieces(Position.SAU, pos.isRedTurn()) == 0) {
+            return -(WIN - ply); // Our Sau was captured by the last move
+        }
+        if (pos.canCaptureSau()) {
+            return WIN - (ply + 1); // Taking the Sau ends the game, nothing can be better
+        }
+        if (tablebases != null && ply > 0) {
+            int value = tablebases.probe(pos);
+            if (value != Tablebases.NONE && value != EndgameTable.INVALID) {
+                return tablebaseScore(value, ply);
+            }
+        }
+        if (depth <= 0 || ply >= MAX_PLY - 1) {
+            return quiescence(pos, alpha, beta, ply);
+        }
+
+        long key = pos.getKey();
+        long entry = table.probe(key);
+        int hashMove = Move.NONE;
+        if (entry != 0) {
+            hashMove = TranspositionTable.move(entry);
+            if (TranspositionTable.depth(entry) >= depth) {
+                int score = fromTable(TranspositionTable.score(entry), ply);
+                int bound = TranspositionTable.bound(entry);
+                if (bound == TranspositionTable.EXACT
+                        || (bound == TranspositionTable.LOWER && score >= beta)
+                        || (bound == TranspositionTable.UPPER && score <= alpha)) {
+                    return score;
+                }
+            }
+        }
+
+        MovePicker picker = pickers[ply];
+        picker.start(pos, hashMove, killers[ply][0], killers[ply][1], history);
+        int originalAlpha = alpha;
+        int best = -INFINITY;
+        int bestMove = Move.NONE;
+        int move;
+        while ((move = picker.next()) != Move.NONE) {
+            pos.makeMove(move);
+            int score = -search(pos, depth - 1, -beta, -alpha, ply + 1);
+            pos.undoMove(move);
+            if (stopped) {
+                return 0;
+            }
+            if (score > best) {
+                best = score;
+                bestMove = move;
+                if (score > alpha) {
+                    alpha = score;
+                    if (alpha >= beta) {
+                        if (!Move.isCapture(move)) {
+                            rememberCutoff(move, depth, ply, pos.isRedTurn());
+                        }
+                        break;
+                    }
+                }
+            }
+        }
+        if (bestMove == Move.NONE) {
+            return DRAW; // The side to move has no moves
+        }
+        int bound = best >= beta ? TranspositionTable.LOWER
+                : best > originalAlpha ? TranspositionTable.EXACT : TranspositionTable.UPPER;
+        table.store(key, bestMove, toTable(best, ply), depth, bound);
+        return best;
+    }
+
+    // Makes a quiet move that caused a cutoff a killer at its ply and raises its history,
+    // more for deeper cutoffs, which saved more work.
+    private void rememberCutoff(int move, int depth, int ply, boolean isRed) {
+        if (killers[ply][0] != move) {
+            killers[ply][1] = killers[ply][0];
+            killers[ply][0] = move;
+        }
+        int index = MovePicker.historyIndex(isRed, move);
+        history[index] += depth * depth;
+        if (history[index] > HISTORY_LIMIT) {
+            for (int i = 0; i < history.length; i++) {
+                history[i] /= 2; // Keeps the counts in range, and recent cutoffs count the most
+            }
+        }
+    }
+
+    // The score of a tablebase value, as if the search had found the Sau capture it promises.
+    private static int tablebaseScore(int value, int ply) {
+        if (value == 0) {
+            return DRAW;
+        }
+        return value % 2 == 1 ? WIN - (ply + value) : -(WIN - (ply + value));
+    }
+
+    // Scores of a Sau capture count the plies from the root, the table stores them
+    // counted from the position itself so they stay right when it is reached at another ply.
+    private static int toTable(int score, int ply) {
+        if (score >= WIN_BOUND) {
+            return score + ply;
+        }
+        if (score <= -WIN_BOUND) {
+            return score - ply;
+        }
+        return score;
+    }
+
+    private static int fromTable(int score, int ply) {
+        if (score >= WIN_BOUND) {
+            return score - ply;
+        }
+        if (score <= -WIN_BOUND) {
+            return score + ply;
+        }
+        return score;
+    }
+
+    // Searches captures only, so the search does not stop in the middle of an exchange.
+    private int quiescence(Position pos, int alpha, int beta, int ply) {
+        if (pos.getPieces(Position.SAU, pos.isRedTurn()) == 0) {
+            return -(WIN - ply);
+        }
+        int standPat = Evaluation.evaluate(pos);
+        assert standPat == Evaluation.evaluateFromScratch(pos) : "Incremental evaluation is out of step";
+        if (standPat >= beta || ply >= MAX_PLY - 1) {
+            return standPat;
+        }
+        if (standPat > alpha) {
+            alpha = standPat;
+        }
+        MovePicker picker = pickers[ply];
+        picker.startCaptures(pos);
+        int move;
+        while ((move = picker.next()) != Move.NONE) {
+            if (Move.isSauCapture(move)) {
+                return WIN - (ply + 1);
+            }
+            pos.makeMove(move);
+            int score = -quiescence(pos, -beta, -alpha, ply + 1);
+            pos.undoMove(move);
+            if (checkStop()) {
+                return 0;
+            }
+            if (score > alpha) {
+                alpha = score;
+                if (alpha >= beta) {
+                    break;
+                }
+            }
+        }
+        return alpha;
+    }
+
+    // Counts the node and looks at the clock every few thousand nodes.
+    private boolean checkStop() {
+        if ((++nodes & 2047) == 0 && System.nanoTime() > deadline) {
+            stopped = true;
+        }
+        return stopped;
+    }
+
+    // Orders the root moves: the given move first and the captures, most valuable victim first,
+    // before the quiet moves.
+    private static void orderMoves(int[] moves, int count, int first) {
+        for (int i = 1; i < count; i++) {
+            int move = moves[i];
+            int key = orderKey(move, first);
+            int j = i - 1;
+            while (j >= 0 && orderKey(moves[j], first) < key) {
+                moves[j + 1] = moves[j];
+                j--;
+            }
+            moves[j + 1] = move;
+        }
+    }
+
+    private static int orderKey(int move, int first) {
+        if (move == first) {
+            return Integer.MAX_VALUE;
+        }
+        if (!Move.isCapture(move)) {
+            return 0;
+        }
+        if (Move.isSauCapture(move)) {
+            return Integer.MAX_VALUE - 1;
+        }
+        return 1 + Evaluation.value(Move.capturedType(move)) * 8 - Evaluation.value(Move.type(move)) / 100;
+    }
+}
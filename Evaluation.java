@@ -0,0 +1,139 @@
+/**
+ * Evaluation scores a position for the search, in hundredths of a Ram.
+ * Most of the score is a sum over the pieces of a value for the piece on its square,
+ * its material plus a bonus for where it stands. Position keeps that sum up to date as
+ * pieces move, the way it keeps its Zobrist key, so a leaf costs no loop over the board.
+ * Only mobility, which changes with every blocked line, is counted at the leaf, with a
+ * popcount per piece.
+ *
+ * Terms particular to this game:
+ *   A Ram is scored by its direction. Heading for the enemy it is worth more the
+ *   further it has come, heading back after a bounce it threatens little.
+ *   The Tors and Xors swap every fourth turn, so Position also keeps how much the
+ *   next swap would change the score, and the closer the swap is the more of that
+ *   change is counted now.
+ *
+ * Scores are from Red's side, Blue's tables are Red's turned upside down.
+ * evaluateFromScratch computes the same score without the incremental sums,
+ * to check them.
+ */
+public final class Evaluation {
+    // Material by piece type. Tors and Xors keep turning into each other, so they are worth the same.
+    private static final int[] VALUES = { 100, 320, 450, 450, 0 };
+    private static final int[] MOBILITY = { 0, 3, 4, 4, 0 }; // Per square a piece can move to, by type
+    private static final int REVERSED_RAM = 10; // Bonus for a Ram heading back, wherever it is
+    private static final int RAM_ADVANCE = 8; // Bonus per row a Ram heading for the enemy has come
+    // How much of the coming swap to count by turn count modulo 4, in eighths.
+    // At 3 the next move swaps them.
+    private static final int[] SWAP_WEIGHT = { 0, 1, 2, 4 };
+
+    private static final int[][] PIECES = new int[1 + 2 * Position.TYPES][Position.SQUARES]; // By piece code and square
+    private static final int[][] SWAP_GAINS = new int[1 + 2 * Position.TYPES][Position.SQUARES];
+    private static final int[][] RAM_REVERSED = new int[2][Position.SQUARES]; // By colour and square
+
+    static {
+        for (int square = 0; square < Position.SQUARES; square++) {
+            int col = Position.colOf(square);
+            int row = Position.rowOf(square);
+            int mirrored = Position.square(col, Position.ROWS - 1 - row); // The square as Blue sees it
+            for (int type = 0; type < Position.TYPES; type++) {
+                int red = VALUES[type] + bonus(type, col, row);
+                PIECES[Position.code(type, true)][square] = red;
+                PIECES[Position.code(type, false)][mirrored] = -red;
+            }
+            int reversed = REVERSED_RAM - bonus(Position.RAM, col, row);
+            RAM_REVERSED[Position.RED][square] = reversed;
+            RAM_REVERSED[Position.BLUE][mirrored] = -reversed;
+        }
+        for (int code = 1; code < PIECES.length; code++) {
+            int type = Position.pieceType(code);
+            if (type == Position.TOR || type == Position.XOR) {
+                int swapped = Position.code(type == Position.TOR ? Position.XOR : Position.TOR, Position.pieceIsRed(code));
+                for (int square = 0; square < Position.SQUARES; square++) {
+                    SWAP_GAINS[code][square] = PIECES[swapped][square] - PIECES[code][square];
+                }
+            }
+        }
+    }
+
+    // The bonus of a Red piece of the given type on a square, a Ram heading for Blue.
+    private static int bonus(int type, int col, int row) {
+        int centre = 2 - Math.abs(col - 2); // 0 on the edge files, 2 in the middle
+        switch (type) {
+            case Position.RAM:
+                return RAM_ADVANCE * (6 - Math.max(0, Math.min(6, row))); // Red Rams start on row 6
+            case Position.BIZ:
+                return 6 * centre + (row >= 2 && row <= 5 ? 8 : 0);
+            case Position.TOR:
+                return 2 * centre + (row == 1 ? 10 : 0);
+            case Position.XOR:
+                return 5 * centre + (row >= 2 && row <= 5 ? 5 : 0);
+            default:
+                return row == Position.ROWS - 1 ? 10 : row == Position.ROWS - 2 ? 4 : -10; // The Sau is safest at home
+        }
+    }
+
+    private Evaluation() {
+    }
+
+    public static int value(int type) {
+        return VALUES[type];
+    }
+
+    // The score, from Red's side, of a piece code on a square. Rams count as heading for the enemy.
+    public static int piece(int code, int square) {
+        return PIECES[code][square];
+    }
+
+    // What a Tor or Xor code on a square gains Red when it swaps, 0 for other pieces.
+    public static int swapGain(int code, int square) {
+        return SWAP_GAINS[code][square];
+    }
+
+    // What a Ram of the given colour on a square gains Red when it heads back instead.
+    public static int ramReversed(boolean isRed, int square) {
+        return RAM_REVERSED[Position.colourOf(isRed)][square];
+    }
+
+    // ================== Scores ==================
+
+    // The score from the point of view of the side to move.
+    public static int evaluate(Position pos) {
+        int score = pos.getScore() + pos.getSwapGain() * SWAP_WEIGHT[pos.getTurnCount() & 3] / 8
+                + mobility(pos, true) - mobility(pos, false);
+        return pos.isRedTurn() ? score : -score;
+    }
+
+    // The same as evaluate, adding every term up from the board. Slow, for checking evaluate.
+    public static int evaluateFromScratch(Position pos) {
+        int score = pos.computeScore() + pos.computeSwapGain() * SWAP_WEIGHT[pos.getTurnCount() & 3] / 8
+                + mobility(pos, true) - mobility(pos, false);
+        return pos.isRedTurn() ? score : -score;
+    }
+
+    // The number of squares the Bizes, Tors and Xors of one side can move to, weighted by type.
+    private static int mobility(Position pos, boolean isRed) {
+        long own = pos.getColour(isRed);
+        long occupied = pos.getOccupied();
+        int score = 0;
+        long bizes = pos.getPieces(Position.BIZ, isRed);
+        while (bizes != 0) {
+            int square = Long.numberOfTrailingZeros(bizes);
+            bizes &= bizes - 1;
+            score += MOBILITY[Position.BIZ] * Long.bitCount(AttackTables.bizAttacks(square) & ~own);
+        }
+        long tors = pos.getPieces(Position.TOR, isRed);
+        while (tors != 0) {
+            int square = Long.numberOfTrailingZeros(tors);
+            tors &= tors - 1;
+            score += MOBILITY[Position.TOR] * Long.bitCount(AttackTables.torAttacks(square, occupied) & ~own);
+        }
+        long xors = pos.getPieces(Position.XOR, isRed);
+        while (xors != 0) {
+            int square = Long.numberOfTrailingZeros(xors);
+            xors &= xors - 1;
+            score += MOBILITY[Position.XOR] * Long.bitCount(AttackTables.xorAttacks(square, occupied) & ~own);
+        }
+        return score;
+    }
+}
@@ -0,0 +1,145 @@
+/**
+ * EventBus delivers the ChessEvents of a ChessModel to its observers.
+ *
+ * Publishing only queues the event, so the model never waits for an observer.
+ * The first event queued starts a frame timer. When it fires, everything queued
+ * during the frame goes out as one list, so a move that also captures, swaps the
+ * Tors and Xors and ends the game causes one repaint rather than four.
+ * Each observer gets the list on its own executor: ChessView on the Swing event
+ * thread, anything else, such as a logger or a spectator, on a queue of its own.
+ * The queues take turns on a shared pool of threads, one frame at a time and in order,
+ * so a slow observer only falls behind itself and never holds up the others.
+ *
+ * Observers are kept in a CopyOnWriteArrayList, so they can be added or removed
+ * at any time, even by an observer while it is being notified.
+ */
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+public class EventBus {
+    public static final long FRAME_MILLIS = 16; // About 60 deliveries a second at most
+
+    // Shared by every bus, so models made by the thousand do not each start threads
+    private static final ScheduledExecutorService FRAME_TIMER = Executors.newSingleThreadScheduledExecutor(
+            task -> daemon(task, "event-frames"));
+    // Runs the queues of observers that deliver in the background, a thread for each queue that has work
+    private static final ExecutorService OBSERVER_POOL = Executors.newCachedThreadPool(
+            task -> daemon(task, "event-observer"));
+
+    private final CopyOnWriteArrayList<Registration> observers = new CopyOnWriteArrayList<>();
+    private List<ChessEvent> pending = new ArrayList<>(); // Guarded by this, events of the coming frame
+
+    // An observer and the executor it asked for when it was added.
+    private static final class Registration {
+        final Observer observer;
+        final Executor executor;
+
+        Registration(Observer observer) {
+            this.observer = observer;
+            this.executor = observer.executor();
+        }
+    }
+
+    // Runs its tasks one at a time in the order given, on a thread of OBSERVER_POOL.
+    // The queue only holds a thread while it has work.
+    private static final class SerialExecutor implements Executor {
+        private final Queue<Runnable> tasks = new ConcurrentLinkedQueue<>();
+        private final AtomicBoolean running = new AtomicBoolean();
+
+        @Override
+        public void execute(Runnable task) {
+            tasks.add(task);
+            schedule();
+        }
+
+        private void schedule() {
+            if (running.compareAndSet(false, true)) {
+                OBSERVER_POOL.execute(this::drain);
+            }
+        }
+
+        private void drain() {
+            try {
+                Runnable task;
+                while ((task = tasks.poll()) != null) {
+                    task.run();
+                }
+            } finally {
+                running.set(false);
+            }
+            if (!tasks.isEmpty()) {
+                schedule(); // Queued after the last poll but before running was cleared
+            }
+        }
+    }
+
+    // A new queue of its own for an observer, see Observer.executor.
+    static Executor serialExecutor() {
+        return new SerialExecutor();
+    }
+
+    public void addObserver(Observer observer) {
+        observers.add(new Registration(observer));
+    }
+
+    public void removeObserver(Observer observer) {
+        observers.removeIf(registration -> registration.observer.equals(observer));
+    }
+
+    // Queues an event for the next frame. Returns at once, from any thread.
+    public void publish(ChessEvent event) {
+        if (observers.isEmpty()) {
+            return; // Nobody to tell, as for games played without a window
+        }
+        boolean first;
+        synchronized (this) {
+            first = pending.isEmpty();
+            pending.add(event);
+        }
+        if (first) {
+            FRAME_TIMER.schedule(this::flush, FRAME_MILLIS, TimeUnit.MILLISECONDS);
+        }
+    }
+
+    // Hands everything queued so far to every observer, on its executor.
+    public void flush() {
+        List<ChessEvent> frame;
+        synchronized (this) {
+            if (pending.isEmpty()) {
+                return;
+            }
+            frame = Collections.unmodifiableList(pending);
+            pending = new ArrayList<>();
+        }
+        for (Registration registration : observers) {
+            Observer observer = registration.observer;
+            registration.executor.execute(() -> deliver(observer, frame));
+        }
+    }
+
+    // One failing observer must not keep the events from the others, or from its own next frame.
+    private static void deliver(Observer observer, List<ChessEvent> frame) {
+        try {
+            observer.onEvents(frame);
+        } catch (RuntimeException e) {
+            System.err.println("Error in observer " + observer + ": " + e);
+        }
+    }
+
+    private static Thread daemon(Runnable task, String name) {
+        Thread thread = new Thread(task, name);
+        thread.setDaemon(true);
+        return thread;
+    }
+}
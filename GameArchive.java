@@ -0,0 +1,227 @@
+/**
+ * GameArchive stores whole games in a compact binary file and reads them back
+ * through a memory-mapped FileChannel, so scanning an archive is a walk over mapped
+ * bytes with no parsing and no objects per game.
+ *
+ * The file starts with MAGIC and a version byte, followed by one record per game:
+ *
+ *   PositionCodec.BYTES  the starting position
+ *   1 byte               the result: UNKNOWN, RED_WON, BLUE_WON or DRAWN
+ *   varint               the number of moves
+ *   varint per move      from * 40 + to, so every move takes one or two bytes
+ *
+ * A varint stores 7 bits per byte, low bits first, with the top bit set on every
+ * byte but the last. The piece types and flags of a move are not stored, they
+ * follow from the position, so readMoves replays the game to fill them in.
+ *
+ * Usage: java GameArchive file   prints how many games and moves the archive
+ *                                holds and how fast it was scanned
+ */
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+
+public final class GameArchive {
+    public static final int MAGIC = 0x43484741; // "CHGA" in ASCII
+    public static final int VERSION = 1;
+    private static final int HEADER_BYTES = 5;
+
+    // Results
+    public static final int UNKNOWN = 0;
+    public static final int RED_WON = 1;
+    public static final int BLUE_WON = 2;
+    public static final int DRAWN = 3;
+
+    private GameArchive() {
+    }
+
+    // Opens an archive for appending games, creating it if it does not exist.
+    public static Writer append(Path file) throws IOException {
+        return new Writer(file);
+    }
+
+    // Maps an archive for reading. Archives larger than 2 GB have to be split.
+    public static Reader open(Path file) throws IOException {
+        return new Reader(file);
+    }
+
+    // Adds games to the end of an archive.
+    public static final class Writer implements Closeable {
+        private final FileChannel channel;
+        private ByteBuffer buffer = ByteBuffer.allocate(4096);
+
+        private Writer(Path file) throws IOException {
+            channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                    StandardOpenOption.APPEND);
+            if (channel.size() == 0) {
+                ByteBuffer header = ByteBuffer.allocate(HEADER_BYTES);
+                header.putInt(MAGIC).put((byte) VERSION).flip();
+                channel.write(header);
+            }
+        }
+
+        // Writes one game: its starting position, its result and the first count moves,
+        // packed as in Move.
+        public void write(Position start, int[] moves, int count, int result) throws IOException {
+            int needed = PositionCodec.BYTES + 1 + 5 + 2 * count;
+            if (buffer.capacity() < needed) {
+                buffer = ByteBuffer.allocate(Math.max(needed, 2 * buffer.capacity()));
+            }
+            buffer.clear();
+            PositionCodec.encode(start, buffer);
+            buffer.put((byte) result);
+            putVarint(buffer, count);
+            for (int i = 0; i < count; i++) {
+                putVarint(buffer, Move.from(moves[i]) * Position.SQUARES + Move.to(moves[i]));
+            }
+            buffer.flip();
+            while (buffer.hasRemaining()) {
+                channel.write(buffer);
+            }
+        }
+
+        @Override
+        public void close() throws IOException {
+            channel.close();
+        }
+    }
+
+    // Walks the games of an archive in order. Call next to move to a game, then read
+    // its moves with readMoves or go straight on to the next one.
+    public static final class Reader implements Closeable {
+        private final FileChannel channel;
+        private final MappedByteBuffer buffer;
+        private int moveCount;
+        private int result;
+        private int movesStart; // Where the moves of the current game start in the buffer
+        private boolean movesRead = true;
+
+        private Reader(Path file) throws IOException {
+            channel = FileChannel.open(file, StandardOpenOption.READ);
+            if (channel.size() > Integer.MAX_VALUE) {
+                channel.close();
+                throw new IOException("Archive is larger than 2 GB: " + file);
+            }
+            buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            if (buffer.remaining() < HEADER_BYTES || buffer.getInt() != MAGIC) {
+                channel.close();
+                throw new IOException("Not a game archive: " + file);
+            }
+            int version = buffer.get();
+            if (version != VERSION) {
+                channel.close();
+                throw new IOException("Unsupported archive version " + version + ": " + file);
+            }
+        }
+
+        // Moves to the next game and decodes its starting position into start.
+        // Returns false when there are no more games.
+        public boolean next(Position start) {
+            if (!movesRead) {
+                skipMoves();
+            }
+            if (!buffer.hasRemaining()) {
+                return false;
+            }
+            PositionCodec.decode(buffer, start);
+            result = buffer.get();
+            moveCount = getVarint(buffer);
+            movesStart = buffer.position();
+            movesRead = false;
+            return true;
+        }
+
+        public int getMoveCount() {
+            return moveCount;
+        }
+
+        public int getResult() {
+            return result;
+        }
+
+        // Plays the moves of the current game on the position, which must be its
+        // starting position, and writes them packed as in Move into moves.
+        // The array needs getMoveCount() entries. Returns the number of moves.
+        public int readMoves(Position position, int[] moves) {
+            buffer.position(movesStart);
+            for (int i = 0; i < moveCount; i++) {
+                int squares = getVarint(buffer);
+                int from = squares / Position.SQUARES;
+                int to = squares % Position.SQUARES;
+                if (!position.isLegal(from, to)) {
+                    throw new IllegalStateException("Illegal move " + i + " in archived game at byte " + movesStart);
+                }
+                moves[i] = position.makeMove(from, to);
+            }
+            movesRead = true;
+            return moveCount;
+        }
+
+        // Jumps over the moves without decoding them.
+        private void skipMoves() {
+            buffer.position(movesStart);
+            for (int i = 0; i < moveCount; i++) {
+                while ((buffer.get() & 0x80) != 0) {
+                    // Every byte but the last of a varint has the top bit set
+                }
+            }
+            movesRead = true;
+        }
+
+        @Override
+        public void close() throws IOException {
+            channel.close();
+        }
+    }
+
+    static void putVarint(ByteBuffer buffer, int value) {
+        while ((value & ~0x7F) != 0) {
+            buffer.put((byte) ((value & 0x7F) | 0x80));
+            value >>>= 7;
+        }
+        buffer.put((byte) value);
+    }
+
+    static int getVarint(ByteBuffer buffer) {
+        int value = 0;
+        for (int shift = 0; ; shift += 7) {
+            byte b = buffer.get();
+            value |= (b & 0x7F) << shift;
+            if (b >= 0) {
+                return value;
+            }
+        }
+    }
+
+    public static void main(String[] args) throws IOException {
+        if (args.length == 0) {
+            System.out.println("Usage: java GameArchive file");
+            return;
+        }
+        Path file = Paths.get(args[0]);
+        long start = System.nanoTime();
+        long games = 0;
+        long moves = 0;
+        long[] results = new long[4];
+        Position position = new Position();
+        try (Reader reader = open(file)) {
+            while (reader.next(position)) {
+                games++;
+                moves += reader.getMoveCount();
+                results[reader.getResult() & 3]++;
+            }
+        }
+        long nanos = System.nanoTime() - start;
+        long bytes = file.toFile().length();
+        System.out.printf("%d games, %d moves, Red won %d, Blue won %d, drawn %d, unknown %d%n",
+                games, moves, results[RED_WON], results[BLUE_WON], results[DRAWN], results[UNKNOWN]);
+        System.out.printf("%d bytes scanned in %d ms, %.1f MB/s, %.0f games/s%n", bytes, nanos / 1_000_000,
+                bytes * 1000.0 / Math.max(1, nanos), games * 1e9 / Math.max(1, nanos));
+    }
+}
@@ -0,0 +1,469 @@
+/**
+ * GameServer hosts many independent games in one JVM for clients on the same machine.
+ * Clients talk to it over TCP on the loopback address, one command per line,
+ * and every connection is served by its own virtual thread where the JVM has them
+ * (Java 21 and later), otherwise by its own platform thread.
+ *
+ * Commands, answered by one line starting with OK or ERR:
+ *   NEW                  starts a game, answers "OK id"
+ *   MOVE id from to      plays a move given as squares such as "e2 e3", answers "OK Ram e2-e3",
+ *                        followed by " RED_WON" or " BLUE_WON" when it takes a Sau
+ *   MOVES id             the legal moves, "OK e2e3 a2a3 ..."
+ *   BOARD id             the position, "OK " and the PositionCodec bytes in hex
+ *   END id               forgets the game
+ *   STATS                games in memory, games evicted, moves played and how long the
+ *                        server took to check and play a move, median and 99th percentile
+ *   QUIT                 closes the connection
+ *
+ * Every game is a Position of its own behind its own lock, so games never wait for
+ * each other and a move is checked by the same rules as the desktop game.
+ * A game nobody has touched for the idle time is written to the games folder with
+ * PositionCodec and dropped from memory; the next command for it reads it back.
+ * Files are only read and written under a game's own ReentrantLock, never under the
+ * lock of the map or a monitor, so no other game and no carrier thread waits for the disk.
+ *
+ * Usage: java GameServer [port] [gamesFolder] [idleSeconds]
+ * See LoadClient for a load generator.
+ */
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.ReentrantLock;
+
+public class GameServer {
+    public static final int DEFAULT_PORT = 7878;
+    private static final String EXTENSION = ".game";
+    private static final char[] HEX = "0123456789abcdef".toCharArray();
+
+    private final Path folder; // Where idle games are kept
+    private final long idleNanos;
+    private final ConcurrentHashMap<Long, Game> games = new ConcurrentHashMap<>();
+    private final AtomicLong nextId;
+    private final LongAdder moves = new LongAdder();
+    private final LongAdder evictions = new LongAdder();
+    // Moves by the microseconds the server spent checking and playing them, the last slot for a millisecond or more
+    private final AtomicLongArray moveMicros = new AtomicLongArray(1001);
+    private final ExecutorService connections = newConnectionExecutor();
+    private final ScheduledExecutorService evictor;
+    private ServerSocket serverSocket;
+
+    // One game in memory. Everything but lastUsed is only touched holding its lock.
+    private static final class Game {
+        final long id;
+        final ReentrantLock lock = new ReentrantLock();
+        Position position; // Null while the game is being read back from disk
+        final int[] moves = new int[MoveList.MAX_MOVES];
+        volatile long lastUsed = System.nanoTime();
+        boolean evicted; // Written out, ended or not found, whoever still holds it has to look it up again
+
+        Game(long id, Position position) {
+            this.id = id;
+            this.position = position;
+        }
+    }
+
+    public GameServer(Path folder, long idleSeconds) throws IOException {
+        this.folder = folder;
+        this.idleNanos = TimeUnit.SECONDS.toNanos(idleSeconds);
+        Files.createDirectories(folder);
+        nextId = new AtomicLong(highestSavedId() + 1);
+        evictor = Executors.newSingleThreadScheduledExecutor(task -> {
+            Thread thread = new Thread(task, "game-evictor");
+            thread.setDaemon(true);
+            return thread;
+        });
+        long period = Math.max(1, idleSeconds / 4);
+        evictor.scheduleWithFixedDelay(this::evictIdleGames, period, period, TimeUnit.SECONDS);
+    }
+
+    public static void main(String[] args) throws IOException {
+        int port = args.length > 0 ? Integer.parseInt(args[0]) : DEFAULT_PORT;
+        Path folder = Paths.get(args.length > 1 ? args[1] : "games");
+        long idleSeconds = args.length > 2 ? Long.parseLong(args[2]) : 60;
+        GameServer server = new GameServer(folder, idleSeconds);
+        Runtime.getRuntime().addShutdownHook(new Thread(server::close)); // Games in memory are written out
+        System.out.println("Serving games on " + InetAddress.getLoopbackAddress().getHostAddress() + ":" + port
+                + ", idle games go to " + folder.toAbsolutePath());
+        server.serve(port);
+    }
+
+    // Accepts connections until the server is closed.
+    public void serve(int port) throws IOException {
+        serverSocket = new ServerSocket(port, 1024, InetAddress.getLoopbackAddress());
+        try {
+            while (!serverSocket.isClosed()) {
+                Socket socket;
+                try {
+                    socket = serverSocket.accept();
+                } catch (IOException e) {
+                    if (serverSocket.isClosed()) {
+                        break;
+                    }
+                    throw e;
+                }
+                connections.execute(() -> handle(socket));
+            }
+        } finally {
+            close();
+        }
+    }
+
+    // Stops accepting connections and writes every game in memory to disk.
+    public void close() {
+        try {
+            if (serverSocket != null) {
+                serverSocket.close();
+            }
+        } catch (IOException e) {
+            System.err.println("Error closing the server socket: " + e.getMessage());
+        }
+        connections.shutdownNow();
+        evictor.shutdownNow();
+        for (Game game : games.values()) {
+            evict(game);
+        }
+    }
+
+    // ================== Connections ==================
+
+    // Serves one connection, a line in and a line out, until the client quits or goes away.
+    private void handle(Socket socket) {
+        try (Socket s = socket;
+                BufferedReader in = new BufferedReader(new InputStreamReader(s.getInputStream(), StandardCharsets.US_ASCII));
+                Writer out = new BufferedWriter(new OutputStreamWriter(s.getOutputStream(), StandardCharsets.US_ASCII))) {
+            s.setTcpNoDelay(true);
+            String line;
+            while ((line = in.readLine()) != null) {
+                String reply;
+                try {
+                    reply = execute(line.trim().split("\\s+"));
+                } catch (IllegalArgumentException | IllegalStateException e) {
+                    reply = "ERR " + e.getMessage();
+                }
+                if (reply == null) {
+                    break;
+                }
+                out.write(reply);
+                out.write('\n');
+                out.flush();
+            }
+        } catch (IOException e) {
+            // The client went away, its games stay until they are evicted
+        }
+    }
+
+    // Runs one command and returns the reply, or null to close the connection.
+    String execute(String[] words) {
+        switch (words[0].toUpperCase()) {
+            case "NEW": {
+                Position position = new Position();
+                position.setupInitial();
+                long id = nextId.getAndIncrement();
+                games.put(id, new Game(id, position));
+                return "OK " + id;
+            }
+            case "MOVE": {
+                needWords(words, 4);
+                long start = System.nanoTime();
+                String reply = move(parseId(words[1]), parseSquare(words[2]), parseSquare(words[3]));
+                long micros = (System.nanoTime() - start) / 1000;
+                moveMicros.incrementAndGet((int) Math.min(micros, moveMicros.length() - 1));
+                return reply;
+            }
+            case "MOVES":
+                needWords(words, 2);
+                return legalMoves(parseId(words[1]));
+            case "BOARD":
+                needWords(words, 2);
+                return board(parseId(words[1]));
+            case "END":
+                needWords(words, 2);
+                return end(parseId(words[1]));
+            case "STATS":
+                return "OK games " + games.size() + " evicted " + evictions.sum() + " moves " + moves.sum()
+                        + " p50 " + movePercentile(0.50) + "us p99 " + movePercentile(0.99) + "us";
+            case "QUIT":
+                return null;
+            default:
+                throw new IllegalArgumentException("Unknown command " + words[0]);
+        }
+    }
+
+    private String move(long id, int from, int to) {
+        Game game = lock(id);
+        try {
+            Position position = game.position;
+            if (position.isGameOver()) {
+                return "ERR Game " + id + " is over";
+            }
+            if (!position.isLegal(from, to)) {
+                return "ERR Illegal move " + Move.squareName(from) + " " + Move.squareName(to);
+            }
+            int move = position.makeMove(from, to);
+            moves.increment();
+            String reply = "OK " + Move.toString(move);
+            if (Move.isSauCapture(move)) {
+                reply += position.isRedTurn() ? " BLUE_WON" : " RED_WON";
+            }
+            return reply;
+        } finally {
+            game.lock.unlock();
+        }
+    }
+
+    private String legalMoves(long id) {
+        Game game = lock(id);
+        try {
+            StringBuilder reply = new StringBuilder("OK");
+            int count = game.position.isGameOver() ? 0 : game.position.generateMoves(game.moves);
+            for (int i = 0; i < count; i++) {
+                reply.append(' ').append(Move.squareName(Move.from(game.moves[i])))
+                        .append(Move.squareName(Move.to(game.moves[i])));
+            }
+            return reply.toString();
+        } finally {
+            game.lock.unlock();
+        }
+    }
+
+    private String board(long id) {
+        Game game = lock(id);
+        try {
+            byte[] bytes = PositionCodec.encode(game.position);
+            StringBuilder reply = new StringBuilder("OK ");
+            for (byte b : bytes) {
+                reply.append(HEX[(b >> 4) & 0xF]).append(HEX[b & 0xF]);
+            }
+            return reply.toString();
+        } finally {
+            game.lock.unlock();
+        }
+    }
+
+    // The file goes before the game leaves the map, both under its lock, so a command
+    // reading the game back at the same time waits for the lock and then finds no file.
+    private String end(long id) {
+        Game game = lock(id);
+        try {
+            game.evicted = true;
+            try {
+                Files.deleteIfExists(file(id));
+            } catch (IOException e) {
+                System.err.println("Error deleting game " + id + ": " + e.getMessage());
+            }
+            games.remove(id, game);
+            return "OK";
+        } finally {
+            game.lock.unlock();
+        }
+    }
+
+    // The microseconds within which the given fraction of moves were checked and played.
+    private long movePercentile(double fraction) {
+        long total = 0;
+        for (int i = 0; i < moveMicros.length(); i++) {
+            total += moveMicros.get(i);
+        }
+        long seen = 0;
+        for (int i = 0; i < moveMicros.length(); i++) {
+            seen += moveMicros.get(i);
+            if (seen > total * fraction) {
+                return i;
+            }
+        }
+        return 0;
+    }
+
+    private static void needWords(String[] words, int count) {
+        if (words.length < count) {
+            throw new IllegalArgumentException(words[0] + " needs " + (count - 1) + " arguments");
+        }
+    }
+
+    private static long parseId(String word) {
+        try {
+            return Long.parseLong(word);
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("Not a game id: " + word);
+        }
+    }
+
+    private static int parseSquare(String word) {
+        int square = Move.parseSquare(word);
+        if (square < 0) {
+            throw new IllegalArgumentException("Not a square: " + word);
+        }
+        return square;
+    }
+
+    // ================== Games in Memory and on Disk ==================
+
+    // The game with the id, locked by the calling thread, which has to unlock it.
+    // Throws IllegalArgumentException if there is no such game.
+    private Game lock(long id) {
+        while (true) {
+            Game game = find(id);
+            game.lock.lock();
+            if (!game.evicted) {
+                game.lastUsed = System.nanoTime();
+                return game;
+            }
+            game.lock.unlock(); // Written out or ended meanwhile, look again
+        }
+    }
+
+    // The game with the id, read back from disk if it was evicted.
+    // The thread that reads it puts a placeholder in the map first and holds the placeholder's
+    // lock while it reads, so other commands for the id wait on that lock, not on the map.
+    private Game find(long id) {
+        Game game = games.get(id);
+        if (game != null) {
+            return game;
+        }
+        Game loading = new Game(id, null);
+        loading.lock.lock();
+        try {
+            game = games.putIfAbsent(id, loading);
+            if (game != null) {
+                return game; // Someone else is reading it, or just did
+            }
+            loading.position = load(id);
+            if (loading.position == null) {
+                loading.evicted = true;
+                games.remove(id, loading);
+                throw new IllegalArgumentException("No game " + id);
+            }
+            return loading;
+        } finally {
+            loading.lock.unlock();
+        }
+    }
+
+    // Reads an evicted game back, or returns null if there is none. The file stays until the
+    // game is evicted again or ended, so a crash never loses it.
+    private Position load(long id) {
+        try {
+            byte[] bytes = Files.readAllBytes(file(id));
+            Position position = new Position();
+            PositionCodec.decode(bytes, position);
+            return position;
+        } catch (NoSuchFileException e) {
+            return null;
+        } catch (IOException | IllegalArgumentException e) {
+            System.err.println("Error loading game " + id + ": " + e.getMessage());
+            return null;
+        }
+    }
+
+    // Writes out and drops every game that has been idle for too long.
+    private void evictIdleGames() {
+        long now = System.nanoTime();
+        for (Game game : games.values()) {
+            if (now - game.lastUsed >= idleNanos) {
+                evict(game);
+            }
+        }
+    }
+
+    // Writes the game to disk and removes it from memory, unless it is used or ended while
+    // the file is written. The file is written without the lock; only moving it into place,
+    // a rename, happens under the lock, so a game that was ended never gets a file again.
+    private void evict(Game game) {
+        byte[] bytes;
+        long used;
+        game.lock.lock();
+        try {
+            if (game.evicted || game.position == null) {
+                return;
+            }
+            bytes = PositionCodec.encode(game.position);
+            used = game.lastUsed;
+        } finally {
+            game.lock.unlock();
+        }
+
+        Path temp;
+        try {
+            temp = Files.createTempFile(folder, game.id + EXTENSION + ".", ".tmp");
+            Files.write(temp, bytes);
+        } catch (IOException e) {
+            System.err.println("Error evicting game " + game.id + ": " + e.getMessage());
+            return; // Kept in memory instead
+        }
+
+        boolean moved = false;
+        game.lock.lock();
+        try {
+            if (!game.evicted && game.lastUsed == used) {
+                Files.move(temp, file(game.id), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+                moved = true;
+                game.evicted = true;
+                games.remove(game.id, game);
+                evictions.increment();
+            }
+        } catch (IOException e) {
+            System.err.println("Error evicting game " + game.id + ": " + e.getMessage()); // Kept in memory instead
+        } finally {
+            game.lock.unlock();
+        }
+        if (!moved) {
+            try {
+                Files.deleteIfExists(temp);
+            } catch (IOException e) {
+                System.err.println("Error deleting " + temp + ": " + e.getMessage());
+            }
+        }
+    }
+
+    private Path file(long id) {
+        return folder.resolve(id + EXTENSION);
+    }
+
+    // The largest id of a game on disk, so new games never reuse one.
+    private long highestSavedId() throws IOException {
+        long highest = 0;
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(folder, "*" + EXTENSION)) {
+            for (Path file : files) {
+                String name = file.getFileName().toString();
+                try {
+                    highest = Math.max(highest, Long.parseLong(name.substring(0, name.length() - EXTENSION.length())));
+                } catch (NumberFormatException e) {
+                    // Not one of ours
+                }
+            }
+        }
+        return highest;
+    }
+
+    // One virtual thread per connection where the JVM has them, otherwise one platform thread each.
+    // Looked up by reflection so the code still compiles and runs on older JVMs.
+    static ExecutorService newConnectionExecutor() {
+        try {
+            return (ExecutorService) Executors.class.getMethod("newVirtualThreadPerTaskExecutor").invoke(null);
+        } catch (ReflectiveOperationException e) {
+            return Executors.newCachedThreadPool();
+        }
+    }
+}
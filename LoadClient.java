@@ -0,0 +1,152 @@
+/**
+ * LoadClient puts a GameServer under load and reports how fast it answers.
+ * It opens many connections at once, starts several games on each and plays random
+ * legal moves in them, one game after another, so every game on the server stays
+ * in play at the same time. The client follows each game on a Position of its own
+ * to choose the moves, and times every MOVE from sending it to reading the reply.
+ * At the end it also prints the server's STATS, whose percentiles leave out the network
+ * and the client, which matters when both run on the same few cores.
+ *
+ * Usage: java LoadClient [connections] [gamesPerConnection] [movesPerGame] [port]
+ * The defaults, 1000 connections with 10 games each, keep 10,000 games in play.
+ */
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.net.InetAddress;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+
+public class LoadClient {
+    public static void main(String[] args) throws InterruptedException {
+        int connections = args.length > 0 ? Integer.parseInt(args[0]) : 1000;
+        int gamesPerConnection = args.length > 1 ? Integer.parseInt(args[1]) : 10;
+        int movesPerGame = args.length > 2 ? Integer.parseInt(args[2]) : 40;
+        int port = args.length > 3 ? Integer.parseInt(args[3]) : GameServer.DEFAULT_PORT;
+
+        ExecutorService executor = GameServer.newConnectionExecutor();
+        List<Future<long[]>> futures = new ArrayList<>();
+        long start = System.nanoTime();
+        for (int i = 0; i < connections; i++) {
+            long seed = i;
+            futures.add(executor.submit(() -> play(port, gamesPerConnection, movesPerGame, seed)));
+        }
+        List<long[]> timings = new ArrayList<>();
+        try {
+            for (Future<long[]> future : futures) {
+                timings.add(future.get());
+            }
+        } catch (ExecutionException e) {
+            throw new IllegalStateException("A connection failed", e.getCause());
+        } finally {
+            executor.shutdownNow();
+        }
+        long nanos = System.nanoTime() - start;
+        report(timings, connections * gamesPerConnection, nanos);
+        try {
+            System.out.println("Server: " + serverStats(port).substring(3));
+        } catch (IOException e) {
+            System.err.println("Error reading the server's stats: " + e.getMessage());
+        }
+    }
+
+    // The server's own counts and its time to check a move, without the network and the client.
+    private static String serverStats(int port) throws IOException {
+        try (Socket socket = new Socket(InetAddress.getLoopbackAddress(), port);
+                BufferedReader in = new BufferedReader(new InputStreamReader(socket.getInputStream(), StandardCharsets.US_ASCII));
+                Writer out = new BufferedWriter(new OutputStreamWriter(socket.getOutputStream(), StandardCharsets.US_ASCII))) {
+            return call(in, out, "STATS");
+        }
+    }
+
+    // Plays the games of one connection and returns the round trip of every move in nanoseconds.
+    private static long[] play(int port, int games, int movesPerGame, long seed) throws IOException {
+        Random random = new Random(seed);
+        long[] ids = new long[games];
+        Position[] positions = new Position[games];
+        long[] timings = new long[games * movesPerGame];
+        int timed = 0;
+        int[] moves = new int[MoveList.MAX_MOVES];
+        try (Socket socket = new Socket(InetAddress.getLoopbackAddress(), port);
+                BufferedReader in = new BufferedReader(new InputStreamReader(socket.getInputStream(), StandardCharsets.US_ASCII));
+                Writer out = new BufferedWriter(new OutputStreamWriter(socket.getOutputStream(), StandardCharsets.US_ASCII))) {
+            socket.setTcpNoDelay(true);
+            for (int g = 0; g < games; g++) {
+                ids[g] = Long.parseLong(call(in, out, "NEW").substring(3));
+                positions[g] = new Position();
+                positions[g].setupInitial();
+            }
+            // One move in every game per round, so all of them stay active
+            for (int round = 0; round < movesPerGame; round++) {
+                for (int g = 0; g < games; g++) {
+                    Position position = positions[g];
+                    int count = position.isGameOver() ? 0 : position.generateMoves(moves);
+                    if (count == 0) {
+                        continue;
+                    }
+                    int move = moves[random.nextInt(count)];
+                    String command = "MOVE " + ids[g] + " " + Move.squareName(Move.from(move)) + " "
+                            + Move.squareName(Move.to(move));
+                    long sent = System.nanoTime();
+                    call(in, out, command);
+                    timings[timed++] = System.nanoTime() - sent;
+                    position.makeMove(move);
+                }
+            }
+            for (int g = 0; g < games; g++) {
+                call(in, out, "END " + ids[g]);
+            }
+            out.write("QUIT\n");
+            out.flush();
+        }
+        return Arrays.copyOf(timings, timed);
+    }
+
+    // Sends a command and returns the reply, which has to start with OK.
+    private static String call(BufferedReader in, Writer out, String command) throws IOException {
+        out.write(command);
+        out.write('\n');
+        out.flush();
+        String reply = in.readLine();
+        if (reply == null || !reply.startsWith("OK")) {
+            throw new IOException(command + " failed: " + reply);
+        }
+        return reply;
+    }
+
+    // Prints the number of moves, the throughput and the latency percentiles.
+    private static void report(List<long[]> timings, int games, long nanos) {
+        int total = 0;
+        for (long[] t : timings) {
+            total += t.length;
+        }
+        long[] all = new long[total];
+        int n = 0;
+        for (long[] t : timings) {
+            System.arraycopy(t, 0, all, n, t.length);
+            n += t.length;
+        }
+        Arrays.sort(all);
+        System.out.printf("%d games, %d moves in %d ms, %.0f moves/s%n", games, total, nanos / 1_000_000,
+                total * 1e9 / Math.max(1, nanos));
+        if (total > 0) {
+            System.out.printf("Move round trip: p50 %.3f ms, p99 %.3f ms, p99.9 %.3f ms, max %.3f ms%n",
+                    percentile(all, 0.50), percentile(all, 0.99), percentile(all, 0.999), all[total - 1] / 1e6);
+        }
+    }
+
+    private static double percentile(long[] sorted, double fraction) {
+        return sorted[Math.min(sorted.length - 1, (int) (sorted.length * fraction))] / 1e6;
+    }
+}
@@ -4,16 +4,28 @@
 // - The `ChessView` is responsible for displaying the game board and pieces.  
 // - The `ChessController` handles user input and updates the model accordingly.  
 // The main window (`JFrame`) contains the game board and interactive buttons for player actions.  
+// Every move is kept in a journal file, so a game cut short by a crash continues on the next start.
+// Endgame tablebases made by TablebaseGenerator are loaded from the tablebases folder when it exists.
 
 import java.awt.*;
+import java.io.IOException;
+import java.nio.file.Paths;
 import javax.swing.*;
 
 public class Main {
+    private static final String JOURNAL_FILE = "Game.journal";
+    private static final String TABLEBASE_FOLDER = "tablebases";
+
     public static void main(String[] args) {
         ChessModel model = new ChessModel();
+        openJournal(model);
         ChessView view = new ChessView(model);  
         ChessController controller = new ChessController(model, view);  
         view.setController(controller);
+        Tablebases tablebases = Tablebases.load(Paths.get(TABLEBASE_FOLDER));
+        if (!tablebases.isEmpty()) {
+            controller.setTablebases(tablebases);
+        }
 
         JFrame frame = new JFrame("Chess Game");
         frame.setDefaultCloseOperation(JFrame.EXIT_ON_CLOSE);
@@ -27,15 +39,44 @@ public class Main {
         JButton restartBtn = new JButton("Restart");
         JButton saveBtn = new JButton("Save");
         JButton loadBtn = new JButton("Load File");
+        JButton computerMoveBtn = new JButton("Computer Move");
+        JButton vsComputerBtn = new JButton("Vs Computer");
         buttonPanel.add(restartBtn);
         buttonPanel.add(saveBtn);
         buttonPanel.add(loadBtn);
+        buttonPanel.add(computerMoveBtn);
+        buttonPanel.add(vsComputerBtn);
         frame.add(buttonPanel, BorderLayout.NORTH);
         restartBtn.addActionListener(controller);
         saveBtn.addActionListener(controller);
         loadBtn.addActionListener(controller);
+        computerMoveBtn.addActionListener(controller);
+        vsComputerBtn.addActionListener(controller);
 
         frame.setVisible(true);
         frame.setResizable(true);
     }
+
+    // Restores the game left in the journal, if there is one, and keeps journaling from there.
+    // Without a journal the game still works, it just is not kept.
+    private static void openJournal(ChessModel model) {
+        try {
+            MoveJournal journal = new MoveJournal(Paths.get(JOURNAL_FILE));
+            Position recovered = journal.recover();
+            if (recovered != null) {
+                model.restorePosition(recovered);
+                System.out.println("Game restored from " + JOURNAL_FILE);
+            }
+            model.setJournal(journal);
+            Runtime.getRuntime().addShutdownHook(new Thread(() -> {
+                try {
+                    journal.close();
+                } catch (IOException e) {
+                    System.err.println("Error closing the journal: " + e.getMessage());
+                }
+            }));
+        } catch (IOException | IllegalArgumentException e) {
+            System.err.println("Error opening the journal: " + e.getMessage());
+        }
+    }
 }
\ No newline at end of file
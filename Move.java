@@ -0,0 +1,80 @@
+/**
+ * Move packs a move into a single int so move generation and search need no objects.
+ *
+ *   bits  0-5   square moved to
+ *   bits  6-11  square moved from
+ *   bits 12-14  type of the moving piece
+ *   bits 15-17  type of the captured piece plus one, 0 when nothing is captured
+ *   bits 18-    flags
+ *
+ * The captured piece always belongs to the other side, so its colour is not stored.
+ * Position.encodeMove fills in the piece types and flags for a from/to pair.
+ * MovePiece wraps a packed move for the GUI.
+ */
+public final class Move {
+    public static final int NONE = 0; // Never a real move, a piece cannot move onto its own square
+
+    // The captured Ram was heading back towards its own side, needed to undo the capture
+    public static final int FLAG_CAPTURED_REVERSED = 1 << 18;
+    // The moving Ram lands on an end row and turns around
+    public static final int FLAG_RAM_BOUNCE = 1 << 19;
+    // This move ends the fourth turn, so the Tors and Xors swap afterwards
+    public static final int FLAG_TRANSFORM = 1 << 20;
+
+    private Move() {
+    }
+
+    public static int create(int from, int to, int type, int capturedType, int flags) {
+        return to | (from << 6) | (type << 12) | ((capturedType + 1) << 15) | flags;
+    }
+
+    public static int to(int move) {
+        return move & 63;
+    }
+
+    public static int from(int move) {
+        return (move >>> 6) & 63;
+    }
+
+    public static int type(int move) {
+        return (move >>> 12) & 7;
+    }
+
+    public static boolean isCapture(int move) {
+        return (move & (7 << 15)) != 0;
+    }
+
+    // The type of the captured piece, or -1 when nothing is captured.
+    public static int capturedType(int move) {
+        return ((move >>> 15) & 7) - 1;
+    }
+
+    public static boolean isSauCapture(int move) {
+        return capturedType(move) == Position.SAU;
+    }
+
+    public static boolean hasFlag(int move, int flag) {
+        return (move & flag) != 0;
+    }
+
+    // Writes a move as the piece followed by its squares, for example "Biz b8-a6".
+    // Columns are letters from the left and rows are numbered from the bottom.
+    public static String toString(int move) {
+        return Position.TYPE_NAMES[type(move)] + " " + squareName(from(move))
+                + (isCapture(move) ? "x" : "-") + squareName(to(move));
+    }
+
+    public static String squareName(int square) {
+        return "" + (char) ('a' + Position.colOf(square)) + (Position.ROWS - Position.rowOf(square));
+    }
+
+    // Reads a square written by squareName, such as "b8". Returns -1 if it is not a square.
+    public static int parseSquare(String name) {
+        if (name.length() != 2) {
+            return -1;
+        }
+        int col = name.charAt(0) - 'a';
+        int row = Position.ROWS - (name.charAt(1) - '0');
+        return Position.onBoard(col, row) ? Position.square(col, row) : -1;
+    }
+}
@@ -0,0 +1,171 @@
+/**
+ * MoveJournal keeps the game in progress on disk as it is played, so a crash or a
+ * closed window loses nothing. Every move is appended as one small fixed-size record
+ * instead of rewriting a save file, and every SNAPSHOT_INTERVAL moves the whole
+ * position is appended too, so recovery never has to replay a long game.
+ *
+ * Writes go to the operating system straight away, but are only forced to the disk
+ * by a background thread every FSYNC_INTERVAL milliseconds, so a move costs
+ * microseconds. A power cut can lose the moves of the last interval, nothing more.
+ *
+ * Every record is RECORD_BYTES long:
+ *
+ *   byte  0      MOVE or SNAPSHOT
+ *   bytes 1-4    MOVE: the move packed as in Move
+ *   bytes 1-41   SNAPSHOT: the position as written by PositionCodec
+ *   bytes 44-47  CRC32 of bytes 0-43
+ *
+ * A record cut short by a crash fails its checksum, so recovery stops there and
+ * the next write goes over it. The journal only ever holds one game, starting a
+ * new game or loading one empties it and begins with a snapshot.
+ */
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.CRC32;
+
+public class MoveJournal implements Closeable {
+    public static final int RECORD_BYTES = 48;
+    public static final int SNAPSHOT_INTERVAL = 32; // Moves between snapshots
+    public static final long FSYNC_INTERVAL = 200; // Milliseconds between forcing writes to the disk
+
+    private static final byte MOVE = 1;
+    private static final byte SNAPSHOT = 2;
+    private static final int CHECKSUMMED_BYTES = RECORD_BYTES - 4;
+
+    private final FileChannel channel;
+    private final ByteBuffer record = ByteBuffer.allocate(RECORD_BYTES);
+    private final byte[] snapshot = new byte[PositionCodec.BYTES];
+    private final CRC32 crc = new CRC32();
+    private final ScheduledExecutorService syncer;
+    private volatile boolean dirty; // Written since the last force
+    private int movesSinceSnapshot;
+
+    // Opens the journal file, creating it if needed. Any damaged records at its end are cut off.
+    public MoveJournal(Path file) throws IOException {
+        channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.READ,
+                StandardOpenOption.WRITE);
+        channel.truncate(validLength());
+        channel.position(channel.size());
+        syncer = Executors.newSingleThreadScheduledExecutor(task -> {
+            Thread thread = new Thread(task, "journal-sync");
+            thread.setDaemon(true);
+            return thread;
+        });
+        syncer.scheduleWithFixedDelay(this::sync, FSYNC_INTERVAL, FSYNC_INTERVAL, TimeUnit.MILLISECONDS);
+    }
+
+    // Rebuilds the game in the journal: the last snapshot with every move after it played again.
+    // Returns null when there is no game to restore, or it is already over.
+    public synchronized Position recover() throws IOException {
+        Position position = null;
+        long end = channel.size();
+        ByteBuffer buffer = ByteBuffer.allocate(RECORD_BYTES);
+        for (long offset = 0; offset < end; offset += RECORD_BYTES) {
+            buffer.clear();
+            channel.read(buffer, offset);
+            byte[] bytes = buffer.array();
+            if (bytes[0] == SNAPSHOT) {
+                position = new Position();
+                PositionCodec.decode(bytes, 1, position);
+            } else if (position != null) {
+                int move = buffer.getInt(1);
+                int from = Move.from(move);
+                int to = Move.to(move);
+                if (!position.isLegal(from, to)) {
+                    System.err.println("Journal holds an illegal move, the game is restored up to it");
+                    break;
+                }
+                position.makeMove(from, to);
+            }
+        }
+        return position == null || position.isGameOver() ? null : position;
+    }
+
+    // Empties the journal and starts it with the position, for a new or loaded game.
+    public synchronized void startGame(Position position) throws IOException {
+        channel.truncate(0);
+        channel.position(0);
+        writeSnapshot(position);
+    }
+
+    // Appends a move that has just been played, position being the position after it.
+    public synchronized void recordMove(int move, Position position) throws IOException {
+        record.clear();
+        record.put(MOVE).putInt(move);
+        write();
+        if (++movesSinceSnapshot >= SNAPSHOT_INTERVAL && !position.isGameOver()) {
+            writeSnapshot(position);
+        }
+    }
+
+    private void writeSnapshot(Position position) throws IOException {
+        PositionCodec.encode(position, snapshot, 0);
+        record.clear();
+        record.put(SNAPSHOT).put(snapshot);
+        write();
+        movesSinceSnapshot = 0;
+    }
+
+    // Pads the record, adds its checksum and appends it.
+    private void write() throws IOException {
+        while (record.position() < CHECKSUMMED_BYTES) {
+            record.put((byte) 0);
+        }
+        crc.reset();
+        crc.update(record.array(), 0, CHECKSUMMED_BYTES);
+        record.putInt((int) crc.getValue());
+        record.flip();
+        while (record.hasRemaining()) {
+            channel.write(record);
+        }
+        dirty = true;
+    }
+
+    // The length of the file up to the first record that is cut short or fails its checksum.
+    private long validLength() throws IOException {
+        long size = channel.size();
+        ByteBuffer buffer = ByteBuffer.allocate(RECORD_BYTES);
+        long offset = 0;
+        while (offset + RECORD_BYTES <= size) {
+            buffer.clear();
+            channel.read(buffer, offset);
+            byte[] bytes = buffer.array();
+            crc.reset();
+            crc.update(bytes, 0, CHECKSUMMED_BYTES);
+            boolean known = bytes[0] == MOVE || bytes[0] == SNAPSHOT;
+            if (!known || buffer.getInt(CHECKSUMMED_BYTES) != (int) crc.getValue()) {
+                break;
+            }
+            offset += RECORD_BYTES;
+        }
+        return offset;
+    }
+
+    // Forces everything written so far to the disk, if anything was.
+    public void sync() {
+        if (!dirty) {
+            return;
+        }
+        dirty = false;
+        try {
+            channel.force(false);
+        } catch (IOException e) {
+            System.err.println("Error writing the journal: " + e.getMessage());
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        syncer.shutdown();
+        sync();
+        channel.close();
+    }
+}
@@ -0,0 +1,25 @@
+/**
+ * MoveList holds one preallocated move buffer per search depth.
+ * Code that walks the game tree generates the moves at depth d into buffer(d),
+ * so nothing is allocated however many positions are visited.
+ */
+public final class MoveList {
+    // More than any position can have: five Rams, two Biz, a Tor, a Xor and a Sau
+    // together never reach 64 moves.
+    public static final int MAX_MOVES = 128;
+
+    private final int[][] buffers;
+
+    public MoveList(int maxDepth) {
+        buffers = new int[maxDepth + 1][MAX_MOVES];
+    }
+
+    // The buffer for the given depth, reused every time that depth is reached.
+    public int[] buffer(int depth) {
+        return buffers[depth];
+    }
+
+    public int maxDepth() {
+        return buffers.length - 1;
+    }
+}
@@ -0,0 +1,162 @@
+/**
+ * MovePicker hands the search the moves of a position one at a time, the most
+ * promising first, in stages:
+ *
+ *   HASH      the best move the TranspositionTable remembers for the position
+ *   CAPTURES  a Sau capture, which ends the game, then the other captures with the
+ *             most valuable victim first and, among those, the cheapest attacker
+ *   KILLERS   two quiet moves that caused a cutoff at the same ply in a sibling position
+ *   QUIETS    the other quiet moves, those that caused cutoffs most often first
+ *
+ * A stage is only generated once the moves before it have been searched without a
+ * cutoff, so a node that is cut off by its hash move or a capture never generates its
+ * quiet moves at all. Within a stage the next move is chosen by a selection pass,
+ * so the moves that are never reached are never sorted either.
+ * The quiescence search uses a picker that stops after the captures.
+ * Each ply of the search reuses its own picker, so nothing is allocated.
+ */
+final class MovePicker {
+    private static final int HASH = 0;
+    private static final int GENERATE_CAPTURES = 1;
+    private static final int CAPTURES = 2;
+    private static final int KILLERS = 3;
+    private static final int GENERATE_QUIETS = 4;
+    private static final int QUIETS = 5;
+    private static final int DONE = 6;
+
+    private static final int SQUARES_MASK = 0xFFF; // The from and to bits of a packed move
+    static final int HISTORY_SIZE = 2 * Position.SQUARES * Position.SQUARES;
+
+    private final int[] moves = new int[MoveList.MAX_MOVES];
+    private final int[] keys = new int[MoveList.MAX_MOVES]; // Ordering key of each move in the current stage
+    private Position pos;
+    private int stage;
+    private int count;
+    private int index;
+    private boolean capturesOnly;
+    private int hashMove;
+    private final int[] killers = new int[2];
+    private int killerIndex;
+    private int[] history; // Cutoff counts by historyIndex
+
+    // Starts picking every move of the position.
+    void start(Position pos, int hashMove, int killer1, int killer2, int[] history) {
+        this.pos = pos;
+        this.hashMove = hashMove;
+        killers[0] = killer1;
+        killers[1] = killer2;
+        this.history = history;
+        capturesOnly = false;
+        stage = HASH;
+    }
+
+    // Starts picking only the captures of the position.
+    void startCaptures(Position pos) {
+        this.pos = pos;
+        hashMove = Move.NONE;
+        capturesOnly = true;
+        stage = GENERATE_CAPTURES;
+    }
+
+    // The next move to search, or Move.NONE when there are no more.
+    int next() {
+        while (true) {
+            switch (stage) {
+                case HASH:
+                    stage = GENERATE_CAPTURES;
+                    if (hashMove != Move.NONE && pos.isLegal(Move.from(hashMove), Move.to(hashMove))) {
+                        // Encoded again, the flags depend on the turn count it is played at
+                        hashMove = pos.encodeMove(Move.from(hashMove), Move.to(hashMove));
+                        return hashMove;
+                    }
+                    hashMove = Move.NONE;
+                    break;
+                case GENERATE_CAPTURES:
+                    count = pos.generateCaptures(moves);
+                    for (int i = 0; i < count; i++) {
+                        keys[i] = captureKey(moves[i]);
+                    }
+                    index = 0;
+                    stage = CAPTURES;
+                    break;
+                case CAPTURES:
+                    if (index < count) {
+                        int move = pickBest();
+                        if (!sameSquares(move, hashMove)) {
+                            return move;
+                        }
+                        break;
+                    }
+                    killerIndex = 0;
+                    stage = capturesOnly ? DONE : KILLERS;
+                    break;
+                case KILLERS:
+                    if (killerIndex < killers.length) {
+                        int killer = killers[killerIndex++];
+                        int from = Move.from(killer);
+                        int to = Move.to(killer);
+                        if (killer != Move.NONE && !sameSquares(killer, hashMove) && !pos.isOccupied(to)
+                                && pos.isLegal(from, to)) {
+                            return pos.encodeMove(from, to);
+                        }
+                        break;
+                    }
+                    stage = GENERATE_QUIETS;
+                    break;
+                case GENERATE_QUIETS:
+                    count = pos.generateQuiets(moves);
+                    for (int i = 0; i < count; i++) {
+                        keys[i] = history[historyIndex(pos.isRedTurn(), moves[i])];
+                    }
+                    index = 0;
+                    stage = QUIETS;
+                    break;
+                case QUIETS:
+                    if (index < count) {
+                        int move = pickBest();
+                        if (!sameSquares(move, hashMove) && !sameSquares(move, killers[0])
+                                && !sameSquares(move, killers[1])) {
+                            return move;
+                        }
+                        break;
+                    }
+                    stage = DONE;
+                    break;
+                default:
+                    return Move.NONE;
+            }
+        }
+    }
+
+    // Moves the move with the highest key among those left to the front and returns it.
+    private int pickBest() {
+        int best = index;
+        for (int i = index + 1; i < count; i++) {
+            if (keys[i] > keys[best]) {
+                best = i;
+            }
+        }
+        int move = moves[best];
+        moves[best] = moves[index];
+        keys[best] = keys[index];
+        index++;
+        return move;
+    }
+
+    // Most valuable victim, least valuable attacker. Taking the Sau beats everything.
+    private static int captureKey(int move) {
+        if (Move.isSauCapture(move)) {
+            return Integer.MAX_VALUE;
+        }
+        return Evaluation.value(Move.capturedType(move)) * 8 - Evaluation.value(Move.type(move)) / 100;
+    }
+
+    private static boolean sameSquares(int move, int other) {
+        return other != Move.NONE && (move & SQUARES_MASK) == (other & SQUARES_MASK);
+    }
+
+    // Where the cutoff count of a move by one side is kept in a history array of HISTORY_SIZE.
+    static int historyIndex(boolean isRed, int move) {
+        return (isRed ? 0 : Position.SQUARES * Position.SQUARES) + Move.from(move) * Position.SQUARES + Move.to(move);
+    }
+}
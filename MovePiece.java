@@ -1,5 +1,7 @@
 // MovePiece is co-written by Yi Thung and Zong Xin
 // The structure and constructor was written by Yi Thung.
+// It is the GUI's view of a move: the rules work on the packed int from Move,
+// this adds the Pieces objects that are drawn on screen.
 public class MovePiece {
     // Storing the initial and new position of the piece
     private int col, row;
@@ -9,6 +11,9 @@ public class MovePiece {
     private Pieces piece;
     private Pieces capture;     
 
+    // The same move packed for Position, Move.NONE if the target is off the board
+    private int move;
+
     public MovePiece(ChessModel board, Pieces p, int newCol, int newRow) {
         this.col = p.getCol();
         this.row = p.getRow();
@@ -17,6 +22,25 @@ public class MovePiece {
 
         this.piece = p;
         this.capture = board.getPiece(newCol, newRow);
+        this.move = Position.onBoard(newCol, newRow)
+                ? board.getPosition().encodeMove(p.getSquare(), Position.square(newCol, newRow))
+                : Move.NONE;
+    }
+
+    // Wraps a packed move from Position.generateMoves.
+    public MovePiece(ChessModel board, int move) {
+        this.col = Position.colOf(Move.from(move));
+        this.row = Position.rowOf(Move.from(move));
+        this.newCol = Position.colOf(Move.to(move));
+        this.newRow = Position.rowOf(Move.to(move));
+
+        this.piece = board.getPiece(col, row);
+        this.capture = board.getPiece(newCol, newRow);
+        this.move = move;
+    }
+
+    public int getMove() {
+        return move;
     }
 
     // The code belows are written by Zong Xin
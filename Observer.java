@@ -1,6 +1,31 @@
-// The Observer interface is designed to be a part of the Observer Design Pattern
-public interface Observer {
-    void update(); // When square size change due to resizing of window will update
-
-    void updateWinner(String winner); // Notify when a winner is declared
-}
+// The Observer interface is designed to be a part of the Observer Design Pattern
+// The model publishes typed ChessEvents on its EventBus, which hands them over once per frame.
+// Observers written before the events only need update and updateWinner, the default methods
+// below turn each frame of events into those calls.
+
+import java.util.List;
+import java.util.concurrent.Executor;
+
+public interface Observer {
+    void update(); // When square size change due to resizing of window will update
+
+    void updateWinner(String winner); // Notify when a winner is declared
+
+    // Receives the events of one frame, oldest first. By default one update for the whole
+    // frame, and updateWinner when a game ended in it.
+    default void onEvents(List<ChessEvent> events) {
+        update();
+        for (ChessEvent event : events) {
+            if (event.getType() == ChessEvent.Type.GAME_OVER) {
+                updateWinner(event.getWinner());
+            }
+        }
+    }
+
+    // Where the events are delivered, asked once when the observer is added to a bus.
+    // By default a queue of its own on a background thread, so neither the model nor the
+    // other observers wait for it; the view overrides this with the Swing event thread.
+    default Executor executor() {
+        return EventBus.serialExecutor();
+    }
+}
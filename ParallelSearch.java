@@ -0,0 +1,111 @@
+/**
+ * ParallelSearch spreads one search over several cores with Lazy SMP.
+ * Every thread runs its own Engine on its own copy of the position. The only thing
+ * they share is the TranspositionTable, so a thread that finishes a subtree saves the
+ * others from searching it. Half of the helpers start one ply deeper than the main
+ * thread, which keeps them from walking the tree in lockstep.
+ * The move played is the main thread's, and the helpers stop as soon as it is done.
+ * A search with one thread is the same as a plain Engine search.
+ *
+ * Every search has to be announced with prepare() on the thread that starts it,
+ * before it is handed to a worker, so a stop() that comes in between still counts.
+ */
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+public class ParallelSearch {
+    private final TranspositionTable table;
+    private final Engine[] engines; // engines[0] is the main thread's
+    private final ExecutorService helpers; // Runs engines[1..], null with one thread
+
+    // Creates a search using the given number of threads and a shared table of the given size.
+    public ParallelSearch(int threads, int tableMegabytes) {
+        if (threads < 1) {
+            throw new IllegalArgumentException("At least one thread is needed: " + threads);
+        }
+        table = new TranspositionTable(tableMegabytes);
+        engines = new Engine[threads];
+        for (int i = 0; i < threads; i++) {
+            engines[i] = new Engine(table);
+        }
+        helpers = threads == 1 ? null : Executors.newFixedThreadPool(threads - 1, task -> {
+            Thread thread = new Thread(task, "search-helper");
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    public int getThreads() {
+        return engines.length;
+    }
+
+    public TranspositionTable getTable() {
+        return table;
+    }
+
+    // Lets every thread look up endgames in the tablebases, null for none.
+    public void setTablebases(Tablebases tablebases) {
+        for (Engine engine : engines) {
+            engine.setTablebases(tablebases);
+        }
+    }
+
+    // Lets the next search run after a stop, or after the last search stopped its helpers.
+    // Called by whoever starts the search, before it runs, never by the search itself.
+    public void prepare() {
+        for (Engine engine : engines) {
+            engine.clearStop();
+        }
+    }
+
+    // Searches the position for at most maxDepth plies or timeMillis milliseconds, like Engine.search.
+    // The node count in the result adds up the nodes of all threads. Returns at once if
+    // stop was called since prepare.
+    public Engine.SearchResult search(Position position, int maxDepth, long timeMillis) {
+        table.newSearch();
+        List<Future<?>> running = new ArrayList<>();
+        for (int i = 1; i < engines.length; i++) {
+            Engine helper = engines[i];
+            int firstDepth = 1 + i % 2;
+            running.add(helpers.submit(() -> helper.search(position, maxDepth, timeMillis, firstDepth)));
+        }
+
+        Engine.SearchResult main = engines[0].search(position, maxDepth, timeMillis, 1);
+
+        long nodes = main.getNodes();
+        for (int i = 1; i < engines.length; i++) {
+            engines[i].stop();
+        }
+        for (int i = 0; i < running.size(); i++) {
+            try {
+                running.get(i).get();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            } catch (ExecutionException e) {
+                throw new IllegalStateException("Search helper failed", e.getCause());
+            }
+            nodes += engines[i + 1].getNodes();
+        }
+        return new Engine.SearchResult(main.getBestMove(), main.getScore(), main.getDepth(), nodes,
+                main.getMillis());
+    }
+
+    // Asks a running search to finish as soon as possible, from any thread.
+    public void stop() {
+        for (Engine engine : engines) {
+            engine.stop();
+        }
+    }
+
+    // Ends the helper threads. The search cannot be used afterwards.
+    public void shutdown() {
+        if (helpers != null) {
+            helpers.shutdownNow();
+        }
+    }
+}
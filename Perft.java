@@ -0,0 +1,135 @@
+/**
+ * Perft counts the positions reachable in exactly N moves, the standard way to
+ * test a move generator. The counts in EXPECTED up to depth 6 were checked against
+ * the rule code in the Pieces classes, so a change to Position or AttackTables that
+ * still gives the same counts generates the same moves, only faster or slower.
+ * The game ends when a Sau is captured, so such a position has no moves.
+ *
+ * Usage:
+ *   java Perft depth [saveFile] [divide]   counts from the start or from a save file,
+ *                                          divide also prints the count below each first move
+ *   java Perft check [depth]               compares the start position with EXPECTED
+ */
+
+import java.io.BufferedReader;
+import java.io.FileReader;
+import java.io.IOException;
+
+public class Perft {
+    // Positions reachable from the start position, EXPECTED[d] after d moves
+    static final long[] EXPECTED = {
+            1L,
+            9L,
+            81L,
+            855L,
+            9022L,
+            109234L,
+            1320409L, // Depths up to here were also counted with the Pieces classes
+            17605903L,
+            234003401L,
+    };
+
+    private final MoveList moveList;
+
+    public Perft(int maxDepth) {
+        moveList = new MoveList(maxDepth);
+    }
+
+    // Counts the positions reachable from pos in exactly depth moves. The position is left as it was.
+    public long perft(Position pos, int depth) {
+        if (depth == 0) {
+            return 1;
+        }
+        if (pos.isGameOver()) {
+            return 0;
+        }
+        int[] moves = moveList.buffer(depth);
+        int count = pos.generateMoves(moves);
+        if (depth == 1) {
+            return count; // Every move leads to exactly one position
+        }
+        long nodes = 0;
+        for (int i = 0; i < count; i++) {
+            pos.makeMove(moves[i]);
+            nodes += perft(pos, depth - 1);
+            pos.undoMove(moves[i]);
+        }
+        return nodes;
+    }
+
+    // Like perft, but prints the count below every first move.
+    public long divide(Position pos, int depth) {
+        if (depth == 0 || pos.isGameOver()) {
+            return perft(pos, depth);
+        }
+        int[] moves = new int[MoveList.MAX_MOVES];
+        int count = pos.generateMoves(moves);
+        long nodes = 0;
+        for (int i = 0; i < count; i++) {
+            pos.makeMove(moves[i]);
+            long below = perft(pos, depth - 1);
+            pos.undoMove(moves[i]);
+            System.out.println(Move.toString(moves[i]) + ": " + below);
+            nodes += below;
+        }
+        System.out.println("Moves: " + count);
+        return nodes;
+    }
+
+    public static void main(String[] args) throws IOException {
+        if (args.length == 0) {
+            System.out.println("Usage: java Perft depth [saveFile] [divide] | java Perft check [depth]");
+            return;
+        }
+        if (args[0].equals("check")) {
+            int depth = args.length > 1 ? Integer.parseInt(args[1]) : EXPECTED.length - 1;
+            System.exit(check(Math.min(depth, EXPECTED.length - 1)) ? 0 : 1);
+        }
+
+        int depth = Integer.parseInt(args[0]);
+        boolean divide = false;
+        Position pos = new Position();
+        pos.setupInitial();
+        for (int i = 1; i < args.length; i++) {
+            if (args[i].equals("divide")) {
+                divide = true;
+            } else {
+                try (BufferedReader reader = new BufferedReader(new FileReader(args[i]))) {
+                    pos.readSave(reader);
+                }
+            }
+        }
+
+        Perft perft = new Perft(depth);
+        long start = System.nanoTime();
+        long nodes = divide ? perft.divide(pos, depth) : perft.perft(pos, depth);
+        report(depth, nodes, System.nanoTime() - start);
+    }
+
+    // Counts every depth of the start position and compares it with EXPECTED.
+    private static boolean check(int maxDepth) {
+        boolean ok = true;
+        Perft perft = new Perft(maxDepth);
+        for (int depth = 1; depth <= maxDepth; depth++) {
+            Position pos = new Position();
+            pos.setupInitial();
+            long start = System.nanoTime();
+            long nodes = perft.perft(pos, depth);
+            long elapsed = System.nanoTime() - start;
+            boolean match = nodes == EXPECTED[depth];
+            ok &= match;
+            System.out.print(match ? "ok   " : "FAIL ");
+            report(depth, nodes, elapsed);
+            if (!match) {
+                System.out.println("     expected " + EXPECTED[depth]);
+            }
+        }
+        return ok;
+    }
+
+    private static void report(int depth, long nodes, long nanos) {
+        long millis = nanos / 1_000_000;
+        System.out.println("depth " + depth + " nodes " + nodes + " time " + millis + " ms nps "
+                + nodes * 1_000_000_000L / Math.max(1, nanos));
+    }
+}
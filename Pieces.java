@@ -4,27 +4,27 @@
  * The Pieces class represents a chess piece in the game.
  * It handles piece properties such as position, color, name, and graphical representation.
  * The class also supports flipping images, resizing, and updating positions.
+ * The images themselves come from SpriteCache and are shared by every piece of the
+ * same type and colour. Nothing is read from disk until a piece is first drawn,
+ * so pieces can be created and checked for moves on a headless machine.
  */
 
-import java.awt.*;
 import java.awt.image.*;
-import java.io.*;
-import javax.imageio.*;
+import java.util.List;
 
 public class Pieces {
-    private BufferedImage currentImage; // Current image of the piece
-    private BufferedImage defaultImage; // Default orientation
-    private BufferedImage flippedImage; // Flipped orientation      
+    private int imageSize; // Size the image is drawn at, 0 for its original size
     private int col, row; // Logical position
     private int xPos, yPos; // Screen position
     private boolean isRed; // Team color
     private String name; // Piece name
     private int squareSize; // Current square size
-    private boolean flipped = false; // To decide the pieces' orientation
+    private boolean flipped = false; // Whether the piece faces the other way, like a Ram heading back
 
     // Constructor by Zong Xin. Initializes a piece with the specified attributes.
     public Pieces(int squareSize, int col, int row, boolean isRed, String name) {
         this.squareSize = squareSize;
+        this.imageSize = squareSize;
         this.col = col;
         this.row = row;
         this.isRed = isRed;
@@ -36,112 +36,32 @@ public class Pieces {
         this.yPos = yPos;
     }
 
-    // Loads an image for the chess piece from the given file path.
-    // Written by Yi Thung.
-    public BufferedImage getImage(String imagePath) {
-        BufferedImage image = null;
-
-        try {
-            // Load the image
-            image = ImageIO.read(getClass().getResourceAsStream(imagePath + ".png"));
-            if (image == null) {
-                System.err.println("Image not found: " + imagePath + ".png");
-            }
-        } catch (IOException e) {
-            e.printStackTrace();
-            // throwable along with other details like the line number and class name where the exception occurred.
-        }
-
-        return image;
-    }
-
     // Resizes the piece's image based on the square size.
-    // Applies high-quality interpolation for better scaling.
+    // The scaled image is made by SpriteCache from the original picture the first
+    // time it is drawn at this size, and shared with every piece like this one.
     // Written by Zong Xin
     public void updateImageSize(int squareSize) {
-        int newSize = squareSize - 10;
-
-        BufferedImage bufferedScaledImage = new BufferedImage(newSize, newSize, BufferedImage.TYPE_INT_ARGB);
-
-        Graphics2D g2d = bufferedScaledImage.createGraphics();
-
-        // Set the rendering hints for high-quality scaling
-        g2d.setRenderingHint(RenderingHints.KEY_INTERPOLATION, RenderingHints.VALUE_INTERPOLATION_BICUBIC); // High-quality
-                                                                                                            // interpolation
-        g2d.setRenderingHint(RenderingHints.KEY_ANTIALIASING, RenderingHints.VALUE_ANTIALIAS_ON); // Smooth edges
-        g2d.setRenderingHint(RenderingHints.KEY_RENDERING, RenderingHints.VALUE_RENDER_QUALITY); // Quality rendering
-
-        g2d.drawImage(currentImage, 0, 0, newSize, newSize, null);
-        g2d.dispose();
-        this.currentImage = bufferedScaledImage;
+        this.imageSize = squareSize;
     }
 
     // Updates the screen position of the piece based on the logical board position.
     // Ensures the piece aligns correctly with the board grid.
+    // The position comes from the column and row, the old pixel position was
+    // measured with the old square size and cannot be reused.
     // Written by Zong Xin.
     public void updatePosition(int squareSize) {
-        // Calculate new positions
-        int newX = xPos / squareSize;
-        int newY = yPos / squareSize;
         this.squareSize = squareSize;
 
-        // Making sure the pieces aligns with the grid
-        newX = newX + (newX * squareSize);
-        newY = newY + (newY * squareSize);
-
         // Update the position
-        this.xPos = newX;
-        this.yPos = newY;
-    }
-
-    // Creates a flipped version of the given image.
-    // This is used to visually differentiate opposing sides.
-    // Co-written by Zong Xin and Aveeniskh
-    private BufferedImage createFlippedImage(BufferedImage img) {
-        if (img == null)
-            return null;
-
-        int width = img.getWidth();
-        int height = img.getHeight();
-
-        BufferedImage flipped = new BufferedImage(width, height, BufferedImage.TYPE_INT_ARGB);  //aggregation
-        Graphics2D g2d = flipped.createGraphics();
-
-        // Translate the graphics context to the bottom of the image
-        g2d.translate(0, height);
-
-        // Flip the image vertically by scaling it negatively along the Y-axis
-        g2d.scale(1, -1);
-
-        // Draw the original image with the inverted graphics
-        g2d.drawImage(img, 0, 0, null);
-        g2d.dispose();
-
-        return flipped;
-    }
-
-    // Loads the default and flipped images for the piece.
-    // Initializes the piece with the default orientation.
-    // Unfortunately the default pic is inverted therefore initial orientation is
-    // the flipped image.
-    // Written by Aveeniskh.
-    public void initializeImage(String imagePath) {
-        this.defaultImage = getImage(imagePath); // Load the default image
-        this.flippedImage = createFlippedImage(this.defaultImage); // Create the flipped version
-        this.currentImage = this.flippedImage; // Set the initial orientation
+        this.xPos = col * squareSize;
+        this.yPos = row * squareSize;
     }
 
     // Toggles the piece's orientation between default and flipped.
     // This visually rotates the piece when needed.
     // Written by Zong Xin.
     public void flipOrientation() {
-        if (!flipped) {
-            this.currentImage = defaultImage; // Use the flipped orientation
-            this.flipped = true;
-        } else {
-            this.currentImage = flippedImage; // Use the default orientation
-            this.flipped = false;
-        }
+        this.flipped = !flipped;
     }
 
     // Determines if the piece can legally move to the given position.
@@ -158,14 +78,41 @@ public class Pieces {
         return false;
     }
 
+    // Adds every move this piece can make to the list.
+    // This default tries every square with isValid and isCollide, piece types
+    // override it to produce only the squares they can actually reach.
+    public void generateMoves(ChessModel board, List<MovePiece> moves) {
+        long own = board.getPosition().getColour(getIsRed());
+        for (int square = 0; square < Position.SQUARES; square++) {
+            int col = Position.colOf(square);
+            int row = Position.rowOf(square);
+            if ((own & Position.bit(square)) == 0 && isValid(col, row) && !isCollide(col, row)) {
+                moves.add(new MovePiece(board, this, col, row));
+            }
+        }
+    }
+
+    // Adds a move to each square in the mask that is not held by this piece's own side.
+    protected void addTargets(ChessModel board, long targets, List<MovePiece> moves) {
+        targets &= ~board.getPosition().getColour(getIsRed());
+        while (targets != 0) {
+            int square = Long.numberOfTrailingZeros(targets);
+            targets &= targets - 1;
+            moves.add(new MovePiece(board, this, Position.colOf(square), Position.rowOf(square)));
+        }
+    }
+
     // Below are getters and setters needed to perform other functions.
     // Written by Zong Xin
     public void setFlipped(boolean flipped) {
         this.flipped = flipped;
     }
 
-    public BufferedImage getCurrentImage() {
-        return currentImage;
+    // Returns the image without waiting for it to be scaled. If it is not ready,
+    // a stand-in is returned (or null) and onReady runs once the real one is.
+    // boardFlipped turns the image around for a board drawn with Blue at the bottom.
+    public BufferedImage requestImage(boolean boardFlipped, Runnable onReady) {
+        return SpriteCache.requestSprite(Position.typeOf(name), isRed, flipped != boardFlipped, imageSize, onReady);
     }
 
     public int getCol() {
@@ -176,6 +123,11 @@ public class Pieces {
         return row;
     }
 
+    // The square number of the piece, as used by Position and AttackTables.
+    public int getSquare() {
+        return Position.square(col, row);
+    }
+
     public Boolean getIsRed() {
         return isRed;
     }
@@ -0,0 +1,610 @@
+/**
+ * Position is the headless core of the game rules.
+ * It stores where the pieces are as bitboards, whose turn it is, the turn count
+ * that drives the Tor/Xor transform and the direction of every Ram.
+ * It generates, validates, makes and undoes moves without touching Swing or images,
+ * ChessModel drives it and mirrors the result onto the Pieces objects the view draws.
+ *
+ * The board has 5 columns and 8 rows, so all 40 squares fit in one long.
+ * Square (col, row) is bit number row * 5 + col.
+ * There is one mask per piece type and colour, one mask per colour
+ * and one mask for every occupied square.
+ * The coordinates never change with the turn: Red starts on rows 6 and 7 and
+ * moves up the board, Blue starts on rows 0 and 1 and moves down. Only the view
+ * turns the board around for Blue, so a move changes a handful of bits.
+ *
+ * Every change also updates a 64-bit Zobrist key, so a position can be looked up
+ * in a TranspositionTable without comparing boards. computeKey rebuilds it from
+ * scratch to check the incremental updates.
+ * In the same way it keeps the piece and square part of the Evaluation score, and
+ * how much the next Tor/Xor swap would change it, so the search never has to add
+ * up the board at a leaf. computeScore and computeSwapGain rebuild them.
+ */
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.Writer;
+import java.util.Arrays;
+
+public class Position {
+    public static final int COLS = 5;
+    public static final int ROWS = 8;
+    public static final int SQUARES = COLS * ROWS;
+    public static final long BOARD_MASK = (1L << SQUARES) - 1;
+
+    // Piece types, used to index the masks
+    public static final int RAM = 0;
+    public static final int BIZ = 1;
+    public static final int TOR = 2;
+    public static final int XOR = 3;
+    public static final int SAU = 4;
+    public static final int TYPES = 5;
+    public static final String[] TYPE_NAMES = { "Ram", "Biz", "Tor", "Xor", "Sau" };
+
+    // Colours, used to index the masks
+    public static final int RED = 0;
+    public static final int BLUE = 1;
+
+    // Piece codes stored per square: 0 is empty, otherwise 1 + colour * TYPES + type
+    public static final int EMPTY = 0;
+
+    private final long[][] pieces = new long[2][TYPES]; // One mask per colour and piece type
+    private final long[] colours = new long[2]; // Every piece of one colour
+    private long occupied; // Every piece on the board
+    private final byte[] board = new byte[SQUARES]; // Piece code on each square
+    private long ramReversed; // Rams that reached an edge and are heading back
+    private boolean redTurn = true;
+    private int turnCount;
+    private long key; // Zobrist key of everything above, see Zobrist
+    private int score; // Sum of the Evaluation piece and Ram direction terms, from Red's side
+    private int swapGain; // How much score the next Tor/Xor swap adds
+
+    public Position() {
+    }
+
+    // Creates an independent copy, for example for a search running on another thread.
+    public Position(Position other) {
+        for (int colour = RED; colour <= BLUE; colour++) {
+            System.arraycopy(other.pieces[colour], 0, pieces[colour], 0, TYPES);
+            colours[colour] = other.colours[colour];
+        }
+        System.arraycopy(other.board, 0, board, 0, SQUARES);
+        occupied = other.occupied;
+        ramReversed = other.ramReversed;
+        redTurn = other.redTurn;
+        turnCount = other.turnCount;
+        key = other.key;
+        score = other.score;
+        swapGain = other.swapGain;
+    }
+
+    // ================== Squares and Pieces ==================
+
+    // Converts a column and row into a square number.
+    public static int square(int col, int row) {
+        return row * COLS + col;
+    }
+
+    public static int colOf(int square) {
+        return square % COLS;
+    }
+
+    public static int rowOf(int square) {
+        return square / COLS;
+    }
+
+    public static boolean onBoard(int col, int row) {
+        return col >= 0 && col < COLS && row >= 0 && row < ROWS;
+    }
+
+    // Returns the mask with only the given square set.
+    public static long bit(int square) {
+        return 1L << square;
+    }
+
+    public static int colourOf(boolean isRed) {
+        return isRed ? RED : BLUE;
+    }
+
+    // Maps a piece name such as "Ram" to its type index.
+    public static int typeOf(String name) {
+        switch (name) {
+            case "Ram":
+                return RAM;
+            case "Biz":
+                return BIZ;
+            case "Tor":
+                return TOR;
+            case "Xor":
+                return XOR;
+            case "Sau":
+                return SAU;
+            default:
+                throw new IllegalArgumentException("Unknown piece: " + name);
+        }
+    }
+
+    public static int code(int type, boolean isRed) {
+        return 1 + colourOf(isRed) * TYPES + type;
+    }
+
+    public static int pieceType(int code) {
+        return (code - 1) % TYPES;
+    }
+
+    public static boolean pieceIsRed(int code) {
+        return code <= TYPES;
+    }
+
+    // ================== Setup ==================
+
+    // Sets up the starting position with Red to move.
+    public void setupInitial() {
+        clear();
+        for (int c = 0; c < COLS; c++) {
+            put(RAM, true, square(c, 6)); // Red team Rams
+            put(RAM, false, square(c, 1)); // Blue team Rams
+        }
+        put(BIZ, true, square(1, 7));
+        put(BIZ, true, square(3, 7));
+        put(BIZ, false, square(1, 0));
+        put(BIZ, false, square(3, 0));
+        put(TOR, true, square(4, 7));
+        put(TOR, false, square(0, 0));
+        put(XOR, false, square(4, 0));
+        put(XOR, true, square(0, 7));
+        put(SAU, true, square(2, 7));
+        put(SAU, false, square(2, 0));
+        setRedTurn(true);
+        setTurnCount(0);
+    }
+
+    // Removes every piece. The turn and turn count are left alone.
+    public void clear() {
+        for (int colour = RED; colour <= BLUE; colour++) {
+            for (int type = 0; type < TYPES; type++) {
+                pieces[colour][type] = 0;
+            }
+            colours[colour] = 0;
+        }
+        occupied = 0;
+        ramReversed = 0;
+        Arrays.fill(board, (byte) EMPTY);
+        key = computeKey();
+        score = 0;
+        swapGain = 0;
+    }
+
+    // Places a piece on an empty square.
+    public void put(int type, boolean isRed, int square) {
+        int colour = colourOf(isRed);
+        long b = bit(square);
+        pieces[colour][type] |= b;
+        colours[colour] |= b;
+        occupied |= b;
+        board[square] = (byte) code(type, isRed);
+        key ^= Zobrist.piece(board[square], square);
+        score += Evaluation.piece(board[square], square);
+        swapGain += Evaluation.swapGain(board[square], square);
+    }
+
+    // Takes a piece off its square. Removing a piece that is not there does nothing.
+    public void remove(int type, boolean isRed, int square) {
+        int colour = colourOf(isRed);
+        long b = ~bit(square);
+        pieces[colour][type] &= b;
+        colours[colour] &= b;
+        occupied = colours[RED] | colours[BLUE];
+        if (board[square] != code(type, isRed)) {
+            return;
+        }
+        if (type == RAM && isRamReversed(square)) {
+            toggleRamReversed(square); // While the Ram is still there to score the change
+        }
+        key ^= Zobrist.piece(board[square], square);
+        score -= Evaluation.piece(board[square], square);
+        swapGain -= Evaluation.swapGain(board[square], square);
+        board[square] = EMPTY;
+    }
+
+    // Moves a piece between two squares. Any captured piece has to be removed first.
+    public void move(int type, boolean isRed, int from, int to) {
+        int colour = colourOf(isRed);
+        long fromTo = bit(from) | bit(to);
+        pieces[colour][type] ^= fromTo;
+        colours[colour] ^= fromTo;
+        occupied = colours[RED] | colours[BLUE];
+        int code = board[from];
+        key ^= Zobrist.piece(code, from) ^ Zobrist.piece(code, to);
+        score += Evaluation.piece(code, to) - Evaluation.piece(code, from);
+        swapGain += Evaluation.swapGain(code, to) - Evaluation.swapGain(code, from);
+        board[to] = board[from];
+        board[from] = EMPTY;
+        if ((ramReversed & bit(from)) != 0) {
+            ramReversed ^= fromTo;
+            key ^= Zobrist.ramReversed(from) ^ Zobrist.ramReversed(to);
+            score += Evaluation.ramReversed(isRed, to) - Evaluation.ramReversed(isRed, from);
+        }
+    }
+
+    // Every Tor becomes a Xor and every Xor becomes a Tor.
+    public void swapTorXor() {
+        for (int colour = RED; colour <= BLUE; colour++) {
+            long tor = pieces[colour][TOR];
+            pieces[colour][TOR] = pieces[colour][XOR];
+            pieces[colour][XOR] = tor;
+        }
+        long sliders = pieces[RED][TOR] | pieces[RED][XOR] | pieces[BLUE][TOR] | pieces[BLUE][XOR];
+        while (sliders != 0) {
+            int square = Long.numberOfTrailingZeros(sliders);
+            sliders &= sliders - 1;
+            int code = board[square];
+            int swapped = code(pieceType(code) == TOR ? XOR : TOR, pieceIsRed(code));
+            board[square] = (byte) swapped;
+            key ^= Zobrist.piece(code, square) ^ Zobrist.piece(swapped, square);
+        }
+        // Swapping back undoes exactly what this swap gained
+        score += swapGain;
+        swapGain = -swapGain;
+    }
+
+    // Sets whether the Ram on the square is heading back towards its own side.
+    public void setRamReversed(int square, boolean reversed) {
+        if (reversed != isRamReversed(square)) {
+            toggleRamReversed(square);
+        }
+    }
+
+    public void setRedTurn(boolean redTurn) {
+        if (redTurn != this.redTurn) {
+            toggleTurn();
+        }
+    }
+
+    public void setTurnCount(int turnCount) {
+        key ^= Zobrist.phase(this.turnCount) ^ Zobrist.phase(turnCount);
+        this.turnCount = turnCount;
+    }
+
+    private void toggleRamReversed(int square) {
+        ramReversed ^= bit(square);
+        key ^= Zobrist.ramReversed(square);
+        if (board[square] != EMPTY && pieceType(board[square]) == RAM) {
+            int change = Evaluation.ramReversed(pieceIsRed(board[square]), square);
+            score += isRamReversed(square) ? change : -change;
+        }
+    }
+
+    private void toggleTurn() {
+        redTurn = !redTurn;
+        key ^= Zobrist.blueToMove();
+    }
+
+    // ================== Queries ==================
+
+    public boolean isOccupied(int square) {
+        return (occupied & bit(square)) != 0;
+    }
+
+    // Squares off the board are never occupied.
+    public boolean isOccupied(int col, int row) {
+        return onBoard(col, row) && isOccupied(square(col, row));
+    }
+
+    // Checks whether a piece of the given colour stands on the square.
+    public boolean hasColour(int square, boolean isRed) {
+        return (colours[colourOf(isRed)] & bit(square)) != 0;
+    }
+
+    // The code of the piece on the square, or EMPTY.
+    public int pieceAt(int square) {
+        return board[square];
+    }
+
+    public boolean isRamReversed(int square) {
+        return (ramReversed & bit(square)) != 0;
+    }
+
+    public long getRamReversed() {
+        return ramReversed;
+    }
+
+    public long getOccupied() {
+        return occupied;
+    }
+
+    public long getColour(boolean isRed) {
+        return colours[colourOf(isRed)];
+    }
+
+    public long getPieces(int type, boolean isRed) {
+        return pieces[colourOf(isRed)][type];
+    }
+
+    public boolean isRedTurn() {
+        return redTurn;
+    }
+
+    public int getTurnCount() {
+        return turnCount;
+    }
+
+    // The Zobrist key, kept up to date by every change to the position.
+    public long getKey() {
+        return key;
+    }
+
+    // Builds the Zobrist key from scratch. It always equals getKey(),
+    // this is the slow way of getting it, for checking the fast one.
+    public long computeKey() {
+        long k = 0;
+        for (int square = 0; square < SQUARES; square++) {
+            if (board[square] != EMPTY) {
+                k ^= Zobrist.piece(board[square], square);
+            }
+            if ((ramReversed & bit(square)) != 0) {
+                k ^= Zobrist.ramReversed(square);
+            }
+        }
+        if (!redTurn) {
+            k ^= Zobrist.blueToMove();
+        }
+        return k ^ Zobrist.phase(turnCount);
+    }
+
+    // The piece and Ram direction part of the Evaluation score, from Red's side,
+    // kept up to date by every change to the position.
+    public int getScore() {
+        return score;
+    }
+
+    // How much the next Tor/Xor swap will add to getScore().
+    public int getSwapGain() {
+        return swapGain;
+    }
+
+    // Adds up getScore() from the board, the slow way of getting it, for checking the fast one.
+    public int computeScore() {
+        int s = 0;
+        for (int square = 0; square < SQUARES; square++) {
+            int code = board[square];
+            if (code == EMPTY) {
+                continue;
+            }
+            s += Evaluation.piece(code, square);
+            if (pieceType(code) == RAM && isRamReversed(square)) {
+                s += Evaluation.ramReversed(pieceIsRed(code), square);
+            }
+        }
+        return s;
+    }
+
+    // Adds up getSwapGain() from the board.
+    public int computeSwapGain() {
+        int s = 0;
+        for (int square = 0; square < SQUARES; square++) {
+            if (board[square] != EMPTY) {
+                s += Evaluation.swapGain(board[square], square);
+            }
+        }
+        return s;
+    }
+
+    // The game is over once either Sau has been captured.
+    public boolean isGameOver() {
+        return pieces[RED][SAU] == 0 || pieces[BLUE][SAU] == 0;
+    }
+
+    // ================== Rules ==================
+
+    // Every square the piece on the given square can move to, own pieces excluded.
+    public long targets(int square) {
+        int code = board[square];
+        if (code == EMPTY) {
+            return 0;
+        }
+        long attacks;
+        switch (pieceType(code)) {
+            case RAM:
+                // Red Rams head up the board and Blue Rams down, until they turn around
+                int target = AttackTables.ramTarget(square, pieceIsRed(code) != isRamReversed(square));
+                attacks = target >= 0 ? bit(target) : 0;
+                break;
+            case BIZ:
+                attacks = AttackTables.bizAttacks(square);
+                break;
+            case TOR:
+                attacks = AttackTables.torAttacks(square, occupied);
+                break;
+            case XOR:
+                attacks = AttackTables.xorAttacks(square, occupied);
+                break;
+            default:
+                attacks = AttackTables.sauAttacks(square);
+                break;
+        }
+        return attacks & ~colours[colourOf(pieceIsRed(code))];
+    }
+
+    // Checks whether the side to move may move the piece on one square to the other.
+    public boolean isLegal(int from, int to) {
+        return from >= 0 && from < SQUARES && to >= 0 && to < SQUARES
+                && hasColour(from, redTurn) && (targets(from) & bit(to)) != 0;
+    }
+
+    // Packs a move from one square to another in the current position,
+    // recording the moving and captured pieces and the flags described in Move.
+    public int encodeMove(int from, int to) {
+        int code = board[from];
+        int captured = board[to];
+        int type = pieceType(code);
+        int flags = 0;
+        if (type == RAM && (rowOf(to) == 0 || rowOf(to) == ROWS - 1)) {
+            flags |= Move.FLAG_RAM_BOUNCE;
+        }
+        if ((turnCount + 1) % 4 == 0) {
+            flags |= Move.FLAG_TRANSFORM;
+        }
+        if (captured == EMPTY) {
+            return Move.create(from, to, type, -1, flags);
+        }
+        if (isRamReversed(to)) {
+            flags |= Move.FLAG_CAPTURED_REVERSED;
+        }
+        return Move.create(from, to, type, pieceType(captured), flags);
+    }
+
+    // Checks whether a piece of the given side could move onto the square, as if an enemy stood there.
+    public boolean attacks(int square, boolean byRed) {
+        long[] own = pieces[colourOf(byRed)];
+        if ((AttackTables.bizAttacks(square) & own[BIZ]) != 0
+                || (AttackTables.sauAttacks(square) & own[SAU]) != 0
+                || (AttackTables.torAttacks(square, occupied) & own[TOR]) != 0
+                || (AttackTables.xorAttacks(square, occupied) & own[XOR]) != 0) {
+            return true;
+        }
+        // A Ram heading up the board attacks from the square below, one heading down from the square above
+        long headingUp = own[RAM] & (byRed ? ~ramReversed : ramReversed);
+        long headingDown = own[RAM] & ~headingUp;
+        int below = AttackTables.ramTarget(square, false);
+        int above = AttackTables.ramTarget(square, true);
+        return (below >= 0 && (headingUp & bit(below)) != 0) || (above >= 0 && (headingDown & bit(above)) != 0);
+    }
+
+    // Checks whether the side to move can take the enemy Sau.
+    public boolean canCaptureSau() {
+        long sau = pieces[colourOf(!redTurn)][SAU];
+        return sau != 0 && attacks(Long.numberOfTrailingZeros(sau), redTurn);
+    }
+
+    // Writes every move of the side to move into the array, packed as described
+    // in Move, and returns how many there are. The array needs MoveList.MAX_MOVES entries.
+    public int generateMoves(int[] moves) {
+        return generate(moves, BOARD_MASK);
+    }
+
+    // Writes only the moves that capture a piece, as generateMoves.
+    public int generateCaptures(int[] moves) {
+        return generate(moves, colours[colourOf(!redTurn)]);
+    }
+
+    // Writes only the moves onto empty squares, as generateMoves.
+    public int generateQuiets(int[] moves) {
+        return generate(moves, ~occupied & BOARD_MASK);
+    }
+
+    // The moves of the side to move that land on the given squares.
+    private int generate(int[] moves, long allowed) {
+        int count = 0;
+        long own = colours[colourOf(redTurn)];
+        while (own != 0) {
+            int from = Long.numberOfTrailingZeros(own);
+            own &= own - 1;
+            long targets = targets(from) & allowed;
+            while (targets != 0) {
+                int to = Long.numberOfTrailingZeros(targets);
+                targets &= targets - 1;
+                moves[count++] = encodeMove(from, to);
+            }
+        }
+        return count;
+    }
+
+    // Plays a move given as two squares and returns it packed, ready for undoMove.
+    public int makeMove(int from, int to) {
+        int move = encodeMove(from, to);
+        makeMove(move);
+        return move;
+    }
+
+    // Plays a packed move and ends the turn: a Ram landing on either end row turns around
+    // and every fourth turn the Tors and Xors swap.
+    public void makeMove(int move) {
+        int from = Move.from(move);
+        int to = Move.to(move);
+        int type = Move.type(move);
+        if (Move.isCapture(move)) {
+            remove(Move.capturedType(move), !redTurn, to);
+        }
+        move(type, redTurn, from, to);
+        if (Move.hasFlag(move, Move.FLAG_RAM_BOUNCE)) {
+            toggleRamReversed(to);
+        }
+
+        toggleTurn();
+        key ^= Zobrist.phase(turnCount) ^ Zobrist.phase(turnCount + 1);
+        if (++turnCount % 4 == 0) {
+            swapTorXor();
+        }
+    }
+
+    // Takes back a packed move played by makeMove.
+    public void undoMove(int move) {
+        key ^= Zobrist.phase(turnCount) ^ Zobrist.phase(turnCount - 1);
+        if (turnCount-- % 4 == 0) {
+            swapTorXor();
+        }
+        toggleTurn();
+
+        int from = Move.from(move);
+        int to = Move.to(move);
+        if (Move.hasFlag(move, Move.FLAG_RAM_BOUNCE)) {
+            toggleRamReversed(to);
+        }
+        move(Move.type(move), redTurn, to, from);
+        if (Move.isCapture(move)) {
+            put(Move.capturedType(move), !redTurn, to);
+            if (Move.hasFlag(move, Move.FLAG_CAPTURED_REVERSED)) {
+                toggleRamReversed(to);
+            }
+        }
+    }
+
+    // ================== Save Files ==================
+
+    // Writes the position in the text save format: the turn, then one
+    // "Name,col,row,isRed" line per piece.
+    // The format stores the board as seen by the side to move, so on Blue's turn
+    // the squares are turned around (square s is written as 39 - s).
+    public void writeSave(Writer writer) throws IOException {
+        writer.write("Is it Red's Turn," + redTurn + "\n");
+        for (int square = 0; square < SQUARES; square++) {
+            int code = board[square];
+            if (code != EMPTY) {
+                int saved = redTurn ? square : SQUARES - 1 - square;
+                writer.write(TYPE_NAMES[pieceType(code)] + "," + colOf(saved) + "," + rowOf(saved) + ","
+                        + pieceIsRed(code) + "\n");
+            }
+        }
+    }
+
+    // Reads a position written by writeSave. Unknown piece names are skipped.
+    // The format has no Ram directions, so a Ram standing on its far edge is taken
+    // to have just arrived there and to be heading back.
+    // The turn is on the first line, so the squares can be turned back as they are read.
+    public void readSave(BufferedReader reader) throws IOException {
+        clear();
+        String line = reader.readLine();
+        if (line != null && line.startsWith("Is")) {
+            setRedTurn(Boolean.parseBoolean(line.split(",")[1])); // Restore turn
+        }
+        while ((line = reader.readLine()) != null) {
+            String[] parts = line.split(",");
+            int col = Integer.parseInt(parts[1]);
+            int row = Integer.parseInt(parts[2]);
+            boolean isRed = Boolean.parseBoolean(parts[3]);
+            int type;
+            try {
+                type = typeOf(parts[0]);
+            } catch (IllegalArgumentException e) {
+                continue;
+            }
+            int square = redTurn ? square(col, row) : SQUARES - 1 - square(col, row);
+            put(type, isRed, square);
+            int farRow = isRed ? 0 : ROWS - 1;
+            if (type == RAM && rowOf(square) == farRow) {
+                setRamReversed(square, true);
+            }
+        }
+    }
+}
@@ -0,0 +1,108 @@
+/**
+ * PositionCodec writes a Position as a fixed block of BYTES bytes, for save files,
+ * game archives and anything else that stores many positions.
+ *
+ *   bytes 0-39  one per square, in square order: the piece code as in Position,
+ *               with RAM_REVERSED set for a Ram heading back towards its own side
+ *   byte  40    bit 0 set when Red is to move, bits 1-2 the turn count modulo 4
+ *
+ * Only the turn count modulo 4 is kept, which is all the rules look at: it says
+ * how many turns are left before the Tors and Xors swap.
+ */
+
+import java.nio.ByteBuffer;
+
+public final class PositionCodec {
+    public static final int BYTES = Position.SQUARES + 1;
+    private static final int RAM_REVERSED = 0x80;
+
+    private PositionCodec() {
+    }
+
+    public static byte[] encode(Position position) {
+        byte[] bytes = new byte[BYTES];
+        encode(position, bytes, 0);
+        return bytes;
+    }
+
+    // Writes the position into bytes[offset] to bytes[offset + BYTES - 1].
+    public static void encode(Position position, byte[] bytes, int offset) {
+        for (int square = 0; square < Position.SQUARES; square++) {
+            bytes[offset + square] = squareByte(position, square);
+        }
+        bytes[offset + Position.SQUARES] = stateByte(position);
+    }
+
+    // Writes the position at the buffer's position and moves past it.
+    public static void encode(Position position, ByteBuffer buffer) {
+        for (int square = 0; square < Position.SQUARES; square++) {
+            buffer.put(squareByte(position, square));
+        }
+        buffer.put(stateByte(position));
+    }
+
+    public static void decode(byte[] bytes, Position position) {
+        decode(bytes, 0, position);
+    }
+
+    // Replaces the position with the one stored at bytes[offset].
+    // Throws IllegalArgumentException if the bytes are not a position.
+    public static void decode(byte[] bytes, int offset, Position position) {
+        position.clear();
+        for (int square = 0; square < Position.SQUARES; square++) {
+            decodeSquare(bytes[offset + square], square, position);
+        }
+        decodeState(bytes[offset + Position.SQUARES], position);
+    }
+
+    // Reads a position at the buffer's position and moves past it.
+    public static void decode(ByteBuffer buffer, Position position) {
+        position.clear();
+        for (int square = 0; square < Position.SQUARES; square++) {
+            decodeSquare(buffer.get(), square, position);
+        }
+        decodeState(buffer.get(), position);
+    }
+
+    private static byte squareByte(Position position, int square) {
+        int code = position.pieceAt(square);
+        if (position.isRamReversed(square)) {
+            code |= RAM_REVERSED;
+        }
+        return (byte) code;
+    }
+
+    private static byte stateByte(Position position) {
+        return (byte) ((position.isRedTurn() ? 1 : 0) | (position.getTurnCount() & 3) << 1);
+    }
+
+    private static void decodeSquare(byte b, int square, Position position) {
+        int value = b & 0xFF;
+        int code = value & ~RAM_REVERSED;
+        if (code == Position.EMPTY) {
+            if (value != Position.EMPTY) {
+                throw new IllegalArgumentException("Bad byte " + value + " on empty square " + square);
+            }
+            return;
+        }
+        if (code > 2 * Position.TYPES) {
+            throw new IllegalArgumentException("Bad piece code " + code + " on square " + square);
+        }
+        int type = Position.pieceType(code);
+        position.put(type, Position.pieceIsRed(code), square);
+        if ((value & RAM_REVERSED) != 0) {
+            if (type != Position.RAM) {
+                throw new IllegalArgumentException("Only a Ram can be reversed, square " + square);
+            }
+            position.setRamReversed(square, true);
+        }
+    }
+
+    private static void decodeState(byte state, Position position) {
+        if ((state & ~7) != 0) {
+            throw new IllegalArgumentException("Bad state byte " + state);
+        }
+        position.setRedTurn((state & 1) != 0);
+        position.setTurnCount((state >> 1) & 3);
+    }
+}
@@ -1,8 +1,10 @@
+import java.util.List;
+
 public class Ram extends Pieces {
 
     // Boolean flag to track whether
     // the Ram piece has reached the edge of the board.
-    private Boolean reachEnd = false;
+    private boolean reachEnd = false;
 
     // Written by Zong Xin
     public Ram(int squareSize, int col, int row, boolean isRed) {
@@ -12,30 +14,26 @@ public class Ram extends Pieces {
         int xPos = col * squareSize;
         int yPos = row * squareSize;
         initializeScreenPosition(xPos, yPos);
-
-        // It uses a method from the parent class to load the
-        // appropriate image based on its team color.
-        initializeImage("pieces/" + (isRed ? "r_ram" : "b_ram"));
-        if (getCurrentImage() == null) {
-            System.err.println("Failed to load image for " + (isRed ? "r_ram" : "b_ram"));
-        }
     }
 
     // Check if the Ram is at the edge of the board.
     // If it does, flip its movement direction.
+    // ChessModel calls this once after the Ram has moved, so checking a move
+    // never changes the direction.
     // Written by Aveeniskh
-    private void isAtEdge() {
-        // For red piece
-        if ((getIsRed() == true && getRow() == 7) || (getIsRed() == true && getRow() == 0)) {
+    public void isAtEdge() {
+        if (getRow() == 7 || getRow() == 0) {
             this.reachEnd = !reachEnd; // Toggle the reachEnd state
-            setFlipped(reachEnd); // Update flipped state
+            flipOrientation(); // Turn the image around to face the new direction
         }
+    }
 
-        // For blue piece
-        if ((getIsRed() == false && getRow() == 7) || (getIsRed() == false && getRow() == 0)) {
-            this.reachEnd = !reachEnd;
-            setFlipped(!reachEnd); // The flipped state is opposite of reachEnd for blue.
-        }
+    public boolean isReachEnd() {
+        return reachEnd;
+    }
+
+    public void setReachEnd(boolean reachEnd) {
+        this.reachEnd = reachEnd;
     }
 
     // Determines if the move to the specified position is valid for the Ram piece.
@@ -44,13 +42,19 @@ public class Ram extends Pieces {
     // Written by Zong Xin
     @Override
     public boolean isValid(int col, int row) {
-        // First check whether ram has reached the edge of the board.
-        isAtEdge();
-        // Determine the next valid row based on the current movement direction.
-        int ramMove = getRow() + (reachEnd ? 1 : -1);
+        // The next square in the current movement direction comes from the table.
+        // Red Rams start out heading up the board and Blue Rams down.
+        int ramMove = AttackTables.ramTarget(getSquare(), getIsRed() != reachEnd);
 
-        return col == getCol() && row == ramMove;
+        return Position.onBoard(col, row) && Position.square(col, row) == ramMove;
     }
-    
 
-}
\ No newline at end of file
+    // Adds the one square in front of the Ram, if there is one.
+    @Override
+    public void generateMoves(ChessModel board, List<MovePiece> moves) {
+        int target = AttackTables.ramTarget(getSquare(), getIsRed() != reachEnd);
+        if (target >= 0) {
+            addTargets(board, Position.bit(target), moves);
+        }
+    }
+}
@@ -0,0 +1,85 @@
+/**
+ * SmpReport measures how well ParallelSearch uses extra cores.
+ * It searches the same positions to the same depth with 1, 2, 4, ... threads and
+ * prints the time taken, the speedup over one thread and the nodes per second.
+ * The speedup is the one that matters, extra threads also search extra nodes.
+ *
+ * Usage: java SmpReport [maxThreads] [depth] [positions]
+ * maxThreads defaults to the number of cores, depth to 9 and positions to 6.
+ */
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+public class SmpReport {
+    private static final int TABLE_MB = 64;
+    private static final int OPENING_PLIES = 8; // Random moves played to make each test position
+
+    public static void main(String[] args) {
+        int maxThreads = args.length > 0 ? Integer.parseInt(args[0]) : Runtime.getRuntime().availableProcessors();
+        int depth = args.length > 1 ? Integer.parseInt(args[1]) : 9;
+        int positionCount = args.length > 2 ? Integer.parseInt(args[2]) : 6;
+        List<Position> positions = testPositions(positionCount);
+
+        List<Integer> threadCounts = new ArrayList<>();
+        for (int threads = 1; threads < maxThreads; threads *= 2) {
+            threadCounts.add(threads);
+        }
+        threadCounts.add(maxThreads);
+
+        // One untimed pass so the first row is not measuring the JIT
+        run(1, positions, Math.min(depth, 6));
+
+        System.out.println("Depth " + depth + " on " + positions.size() + " positions");
+        System.out.printf("%8s %10s %8s %12s %12s%n", "threads", "time ms", "speedup", "nodes", "nps");
+        long baseMillis = 0;
+        for (int threads : threadCounts) {
+            long[] result = run(threads, positions, depth);
+            long millis = result[0];
+            long nodes = result[1];
+            if (threads == 1) {
+                baseMillis = millis;
+            }
+            System.out.printf("%8d %10d %8.2f %12d %12d%n", threads, millis,
+                    (double) baseMillis / Math.max(1, millis), nodes, nodes * 1000 / Math.max(1, millis));
+        }
+    }
+
+    // Searches every position to the depth with a fresh table, returns {milliseconds, nodes}.
+    private static long[] run(int threads, List<Position> positions, int depth) {
+        ParallelSearch search = new ParallelSearch(threads, TABLE_MB);
+        long nodes = 0;
+        long start = System.nanoTime();
+        for (Position position : positions) {
+            search.prepare();
+            nodes += search.search(position, depth, 0).getNodes();
+        }
+        long millis = (System.nanoTime() - start) / 1_000_000;
+        search.shutdown();
+        return new long[] { millis, nodes };
+    }
+
+    // The starting position and positions a few random moves into the game.
+    // The random moves are the same on every run, so reports can be compared.
+    private static List<Position> testPositions(int count) {
+        List<Position> positions = new ArrayList<>();
+        Random random = new Random(13);
+        int[] moves = new int[MoveList.MAX_MOVES];
+        while (positions.size() < count) {
+            Position position = new Position();
+            position.setupInitial();
+            for (int ply = 0; ply < OPENING_PLIES * positions.size(); ply++) {
+                int moveCount = position.generateMoves(moves);
+                if (moveCount == 0 || position.isGameOver()) {
+                    break;
+                }
+                position.makeMove(moves[random.nextInt(moveCount)]);
+            }
+            if (!position.isGameOver()) {
+                positions.add(position);
+            }
+        }
+        return positions;
+    }
+}
@@ -0,0 +1,160 @@
+/**
+ * SpriteCache is the single place piece images come from.
+ * Every piece of the same type and colour shares the same images, so each PNG in
+ * pieces/ is decoded at most once per run and each orientation is scaled at most
+ * once per square size, however many pieces are created or swapped.
+ * The view asks for sprites through requestSprite, which scales missing sizes on a
+ * background thread so resizing the window never waits for image work.
+ */
+
+import java.awt.Graphics2D;
+import java.awt.RenderingHints;
+import java.awt.image.BufferedImage;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import javax.swing.SwingUtilities;
+import javax.imageio.ImageIO;
+
+public final class SpriteCache {
+    // Decoded images, keyed by sourceKey
+    private static final Map<Integer, BufferedImage> SOURCES = new ConcurrentHashMap<>();
+    // Scaled images, keyed by spriteKey
+    private static final Map<Long, BufferedImage> SPRITES = new ConcurrentHashMap<>();
+    // The most recently scaled image for each sourceKey, drawn stretched while a new size is scaled
+    private static final Map<Integer, BufferedImage> LATEST = new ConcurrentHashMap<>();
+    // Sprites waiting to be scaled, so each one is only queued once
+    private static final Set<Long> PENDING = ConcurrentHashMap.newKeySet();
+    // Decodes and scales in the background, off the Swing event thread
+    private static final ExecutorService SCALER = Executors.newSingleThreadExecutor(task -> {
+        Thread thread = new Thread(task, "sprite-scaler");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    private SpriteCache() {
+    }
+
+    // The image for a piece type and colour, in the given orientation, scaled to size x size pixels.
+    // A size of zero or less returns the image at its original size.
+    // The default picture is drawn upside down, which is why pieces start out on the flipped one.
+    public static BufferedImage getSprite(int type, boolean isRed, boolean defaultOrientation, int size) {
+        BufferedImage source = getSource(type, isRed, defaultOrientation);
+        if (source == null || size <= 0) {
+            return source;
+        }
+        return SPRITES.computeIfAbsent(spriteKey(type, isRed, defaultOrientation, size), key -> {
+            BufferedImage scaled = scale(source, size);
+            LATEST.put(sourceKey(type, isRed, defaultOrientation), scaled);
+            return scaled;
+        });
+    }
+
+    // Like getSprite, but never decodes or scales on the calling thread.
+    // If the sprite is not ready yet it is made in the background and onReady runs on
+    // the Swing event thread once it is. Meanwhile the sprite last scaled to another
+    // size is returned for the caller to stretch, or null if there is none yet.
+    public static BufferedImage requestSprite(int type, boolean isRed, boolean defaultOrientation, int size,
+            Runnable onReady) {
+        long key = spriteKey(type, isRed, defaultOrientation, Math.max(size, 0));
+        BufferedImage sprite = SPRITES.get(key);
+        if (sprite != null) {
+            return sprite;
+        }
+        if (PENDING.add(key)) {
+            SCALER.execute(() -> {
+                try {
+                    getSprite(type, isRed, defaultOrientation, size);
+                } finally {
+                    PENDING.remove(key);
+                }
+                SwingUtilities.invokeLater(onReady);
+            });
+        }
+        return LATEST.get(sourceKey(type, isRed, defaultOrientation));
+    }
+
+    // The unscaled image for a piece type and colour in the given orientation.
+    public static BufferedImage getSource(int type, boolean isRed, boolean defaultOrientation) {
+        int key = sourceKey(type, isRed, defaultOrientation);
+        BufferedImage image = SOURCES.get(key);
+        if (image != null) {
+            return image;
+        }
+        // Only one thread decodes, the others wait and then find the image in the map
+        synchronized (SOURCES) {
+            image = SOURCES.get(key);
+            if (image == null) {
+                if (defaultOrientation) {
+                    image = load(type, isRed);
+                } else {
+                    BufferedImage original = getSource(type, isRed, true);
+                    image = original == null ? null : createFlippedImage(original);
+                }
+                if (image != null) {
+                    SOURCES.put(key, image);
+                }
+            }
+        }
+        return image;
+    }
+
+    private static int sourceKey(int type, boolean isRed, boolean defaultOrientation) {
+        return (type * 2 + (isRed ? 1 : 0)) * 2 + (defaultOrientation ? 1 : 0);
+    }
+
+    private static long spriteKey(int type, boolean isRed, boolean defaultOrientation, int size) {
+        return ((long) size << 8) | sourceKey(type, isRed, defaultOrientation);
+    }
+
+    // Reads the PNG for a piece, for example pieces/r_biz.png for a red Biz.
+    private static BufferedImage load(int type, boolean isRed) {
+        String imagePath = "pieces/" + (isRed ? "r_" : "b_") + Position.TYPE_NAMES[type].toLowerCase() + ".png";
+        try (InputStream in = SpriteCache.class.getResourceAsStream(imagePath)) {
+            BufferedImage image = in == null ? null : ImageIO.read(in);
+            if (image == null) {
+                System.err.println("Image not found: " + imagePath);
+            }
+            return image;
+        } catch (IOException e) {
+            System.err.println("Error loading image " + imagePath + ": " + e.getMessage());
+            return null;
+        }
+    }
+
+    // Creates a version of the image flipped vertically.
+    // This is used to visually differentiate opposing sides.
+    private static BufferedImage createFlippedImage(BufferedImage img) {
+        int width = img.getWidth();
+        int height = img.getHeight();
+
+        BufferedImage flipped = new BufferedImage(width, height, BufferedImage.TYPE_INT_ARGB);
+        Graphics2D g2d = flipped.createGraphics();
+
+        // Translate to the bottom of the image and flip it along the Y-axis
+        g2d.translate(0, height);
+        g2d.scale(1, -1);
+        g2d.drawImage(img, 0, 0, null);
+        g2d.dispose();
+
+        return flipped;
+    }
+
+    // Scales an image with high-quality interpolation.
+    private static BufferedImage scale(BufferedImage source, int size) {
+        BufferedImage scaled = new BufferedImage(size, size, BufferedImage.TYPE_INT_ARGB);
+        Graphics2D g2d = scaled.createGraphics();
+
+        g2d.setRenderingHint(RenderingHints.KEY_INTERPOLATION, RenderingHints.VALUE_INTERPOLATION_BICUBIC);
+        g2d.setRenderingHint(RenderingHints.KEY_ANTIALIASING, RenderingHints.VALUE_ANTIALIAS_ON);
+        g2d.setRenderingHint(RenderingHints.KEY_RENDERING, RenderingHints.VALUE_RENDER_QUALITY);
+
+        g2d.drawImage(source, 0, 0, size, size, null);
+        g2d.dispose();
+        return scaled;
+    }
+}
@@ -0,0 +1,253 @@
+/**
+ * TablebaseGenerator solves every endgame with both Saus and up to a few other
+ * pieces and writes one EndgameTable file per set of material.
+ *
+ * A table is solved in passes over all of its positions, spread over every core.
+ * Pass 1 marks the positions where the side to move can take the Sau.
+ * Pass n marks a position as a win in n plies if some move leads to a loss in n - 1,
+ * and as a loss in n plies if every move leads to a win for the opponent, the slowest
+ * of them in n - 1. Captures lead into smaller tables, which are solved first.
+ * When a pass marks nothing new the remaining positions are ones neither side can win.
+ * Positions written during a pass are only ever accepted from earlier passes,
+ * so the threads need no locks and the result does not depend on their timing.
+ *
+ * Usage: java TablebaseGenerator [maxExtras] [folder] [threads]
+ *        java TablebaseGenerator check
+ * maxExtras defaults to 1 and folder to "tablebases". Tables already in the folder
+ * are kept. Tables with two extras take up to 82 MB each; three extras would need
+ * several GB per table, more than one mapped file holds.
+ * check makes sure the engine scores the longest distance a table can hold as the
+ * forced win it is, beyond the reach of its own search.
+ */
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+public class TablebaseGenerator {
+    private static final int CHUNK = 1 << 14; // Positions a thread takes at a time
+
+    private final Tablebases solved; // Smaller tables the captures lead into
+    private final ExecutorService workers;
+    private final int threads;
+
+    public TablebaseGenerator(Tablebases solved, int threads) {
+        this.solved = solved;
+        this.threads = threads;
+        this.workers = Executors.newFixedThreadPool(threads);
+    }
+
+    public static void main(String[] args) throws IOException, InterruptedException {
+        if (args.length > 0 && args[0].equals("check")) {
+            System.exit(check() ? 0 : 1);
+        }
+        int maxExtras = args.length > 0 ? Integer.parseInt(args[0]) : 1;
+        Path folder = Paths.get(args.length > 1 ? args[1] : "tablebases");
+        int threads = args.length > 2 ? Integer.parseInt(args[2]) : Runtime.getRuntime().availableProcessors();
+        Files.createDirectories(folder);
+
+        Tablebases tablebases = Tablebases.load(folder);
+        TablebaseGenerator generator = new TablebaseGenerator(tablebases, threads);
+        try {
+            for (int extras = 0; extras <= maxExtras; extras++) {
+                for (int[] kinds : materials(extras)) {
+                    EndgameTable table = new EndgameTable(kinds);
+                    Path file = folder.resolve(table.getName() + Tablebases.EXTENSION);
+                    if (Files.exists(file)) {
+                        continue; // Loaded above, or reported as unreadable
+                    }
+                    long start = System.nanoTime();
+                    table.create(file);
+                    int maxDistance = generator.generate(table);
+                    tablebases.add(table);
+                    System.out.printf("%-8s %,14d positions, longest win %3d plies, %6d ms%n", table.getName(),
+                            table.size(), maxDistance, (System.nanoTime() - start) / 1_000_000);
+                }
+            }
+        } finally {
+            generator.shutdown();
+        }
+    }
+
+    // Searches a position where every move leads into a loss in MAX_DISTANCE plies for the
+    // opponent, by a made-up table of the two Saus alone. The engine has to score it as a win in
+    // one ply more and stop at depth 1, as it does for any forced Sau capture.
+    private static boolean check() throws IOException {
+        EndgameTable table = new EndgameTable(new int[0]);
+        Path file = Files.createTempFile("check", Tablebases.EXTENSION);
+        try {
+            table.create(file);
+            Position pos = new Position();
+            for (long index = 0; index < table.size(); index++) {
+                table.set(index, table.decode(index, pos) ? EndgameTable.MAX_DISTANCE : EndgameTable.INVALID);
+            }
+            table.finish(EndgameTable.MAX_DISTANCE);
+            Tablebases tablebases = new Tablebases();
+            tablebases.add(table);
+
+            pos.clear();
+            pos.put(Position.SAU, true, Position.square(2, 7));
+            pos.put(Position.SAU, false, Position.square(2, 0));
+            pos.setRedTurn(true);
+            Engine engine = new Engine(new TranspositionTable(1));
+            engine.setTablebases(tablebases);
+            Engine.SearchResult result = engine.search(pos, 10, 0);
+            int expected = Engine.WIN - (1 + EndgameTable.MAX_DISTANCE);
+            boolean ok = result.getScore() == expected && result.getDepth() == 1;
+            System.out.println((ok ? "ok   " : "FAIL ") + result);
+            if (!ok) {
+                System.out.println("     expected score " + expected + " at depth 1");
+            }
+            return ok;
+        } finally {
+            Files.deleteIfExists(file);
+        }
+    }
+
+    // Every multiset of the given number of extra kinds, in increasing order.
+    static List<int[]> materials(int extras) {
+        List<int[]> materials = new ArrayList<>();
+        addMaterials(new int[extras], 0, 0, materials);
+        return materials;
+    }
+
+    private static void addMaterials(int[] kinds, int i, int first, List<int[]> materials) {
+        if (i == kinds.length) {
+            materials.add(kinds.clone());
+            return;
+        }
+        for (int kind = first; kind < EndgameTable.KINDS; kind++) {
+            kinds[i] = kind;
+            addMaterials(kinds, i + 1, kind, materials);
+        }
+    }
+
+    // Solves a table that has been created and is still all zeros. Returns the longest win found.
+    public int generate(EndgameTable table) throws InterruptedException {
+        int maxSub = maxSubtableDistance(table);
+        long changed = pass(table, 1);
+        int n = 1;
+        int longest = changed > 0 ? 1 : 0;
+        while (n < EndgameTable.MAX_DISTANCE && (changed > 0 || n <= maxSub + 1)) {
+            n++;
+            changed = pass(table, n);
+            if (changed > 0) {
+                longest = n;
+            }
+        }
+        table.finish(longest);
+        return longest;
+    }
+
+    // The longest win in the tables the captures of this one lead into.
+    private int maxSubtableDistance(EndgameTable table) {
+        int max = 0;
+        int[] extras = table.getExtras();
+        for (int i = 0; i < extras.length; i++) {
+            int[] smaller = new int[extras.length - 1];
+            for (int j = 0, k = 0; j < extras.length; j++) {
+                if (j != i) {
+                    smaller[k++] = extras[j];
+                }
+            }
+            EndgameTable sub = solved.getTable(new EndgameTable(smaller).getMaterialKey());
+            if (sub == null) {
+                throw new IllegalStateException("Table " + new EndgameTable(smaller).getName() + " is missing");
+            }
+            max = Math.max(max, sub.getMaxDistance());
+        }
+        return max;
+    }
+
+    // Runs pass n over the whole table on every thread and returns how many positions it marked.
+    private long pass(EndgameTable table, int n) throws InterruptedException {
+        AtomicLong nextChunk = new AtomicLong();
+        LongAdder changed = new LongAdder();
+        List<Future<?>> running = new ArrayList<>();
+        for (int t = 0; t < threads; t++) {
+            running.add(workers.submit(() -> {
+                Position pos = new Position();
+                int[] moves = new int[MoveList.MAX_MOVES];
+                long start;
+                while ((start = nextChunk.getAndAdd(CHUNK)) < table.size()) {
+                    long end = Math.min(start + CHUNK, table.size());
+                    for (long index = start; index < end; index++) {
+                        if (table.get(index) == 0 && solve(table, index, n, pos, moves)) {
+                            changed.increment();
+                        }
+                    }
+                }
+            }));
+        }
+        for (Future<?> future : running) {
+            try {
+                future.get();
+            } catch (ExecutionException e) {
+                throw new IllegalStateException("Tablebase pass failed", e.getCause());
+            }
+        }
+        return changed.sum();
+    }
+
+    // Tries to give the position at index its value in pass n. Returns true if it got one.
+    private boolean solve(EndgameTable table, long index, int n, Position pos, int[] moves) {
+        if (!table.decode(index, pos)) {
+            if (n == 1) {
+                table.set(index, EndgameTable.INVALID);
+            }
+            return false;
+        }
+        int count = pos.generateMoves(moves);
+        if (n == 1) {
+            for (int i = 0; i < count; i++) {
+                if (Move.isSauCapture(moves[i])) {
+                    table.set(index, 1);
+                    return true;
+                }
+            }
+            return false;
+        }
+
+        boolean allLose = count > 0; // Every move so far leads to a win for the opponent
+        int slowestLoss = 0;
+        for (int i = 0; i < count; i++) {
+            int move = moves[i];
+            pos.makeMove(move);
+            int value = Move.isCapture(move) ? solved.probe(pos) : table.probe(pos);
+            pos.undoMove(move);
+            if (value == Tablebases.NONE) {
+                throw new IllegalStateException("No table for the position after " + Move.toString(move));
+            }
+            if (value != 0 && value % 2 == 0) {
+                // The opponent loses after this move
+                if (value == n - 1) {
+                    table.set(index, n);
+                    return true;
+                }
+                allLose = false;
+            } else if (value == 0) {
+                allLose = false;
+            } else {
+                slowestLoss = Math.max(slowestLoss, value);
+            }
+        }
+        if (allLose && slowestLoss == n - 1) {
+            table.set(index, n);
+            return true;
+        }
+        return false;
+    }
+
+    public void shutdown() {
+        workers.shutdown();
+    }
+}
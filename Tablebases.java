@@ -0,0 +1,103 @@
+/**
+ * Tablebases answers, for endgames with few pieces, who wins with perfect play
+ * and how fast, by looking the position up in an EndgameTable.
+ * A probe is a few bit counts and one byte read, so the engine can probe at every
+ * node. Tables are made by TablebaseGenerator and loaded from a folder of .tb files.
+ */
+
+import java.io.IOException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+public class Tablebases {
+    public static final String EXTENSION = ".tb";
+    public static final int NONE = -1; // What probe returns when no table covers the position
+
+    private final EndgameTable[] byMaterial = new EndgameTable[1 << (2 * EndgameTable.KINDS)];
+    private int maxPieces; // Most pieces, both Saus included, in any table held
+
+    // Loads every table in the folder. A missing folder gives no tables,
+    // a table that cannot be read is reported and skipped.
+    public static Tablebases load(Path folder) {
+        Tablebases tablebases = new Tablebases();
+        if (!Files.isDirectory(folder)) {
+            return tablebases;
+        }
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(folder, "*" + EXTENSION)) {
+            for (Path file : files) {
+                String name = file.getFileName().toString();
+                try {
+                    EndgameTable table = forName(name.substring(0, name.length() - EXTENSION.length()));
+                    table.open(file);
+                    tablebases.add(table);
+                } catch (IOException | IllegalArgumentException e) {
+                    System.err.println("Error loading tablebase " + file + ": " + e.getMessage());
+                }
+            }
+        } catch (IOException e) {
+            System.err.println("Error reading tablebases from " + folder + ": " + e.getMessage());
+        }
+        return tablebases;
+    }
+
+    // The table for a name made by EndgameTable.getName, not yet opened.
+    public static EndgameTable forName(String name) {
+        if (!name.startsWith("sau")) {
+            throw new IllegalArgumentException("Not a table name: " + name);
+        }
+        int[] extras = new int[name.length() - 3];
+        for (int i = 0; i < extras.length; i++) {
+            extras[i] = EndgameTable.KIND_LETTERS.indexOf(name.charAt(3 + i));
+            if (extras[i] < 0) {
+                throw new IllegalArgumentException("Not a table name: " + name);
+            }
+        }
+        return new EndgameTable(extras);
+    }
+
+    // Adds a table that has been opened or generated.
+    public void add(EndgameTable table) {
+        byMaterial[table.getMaterialKey()] = table;
+        maxPieces = Math.max(maxPieces, 2 + table.getExtraCount());
+    }
+
+    // The table for a material key as made by EndgameTable, or null if there is none.
+    public EndgameTable getTable(int materialKey) {
+        return byMaterial[materialKey];
+    }
+
+    public int getMaxPieces() {
+        return maxPieces;
+    }
+
+    public boolean isEmpty() {
+        return maxPieces == 0;
+    }
+
+    // The table value of the position as described in EndgameTable, or NONE if no table covers it.
+    public int probe(Position pos) {
+        if (Long.bitCount(pos.getOccupied()) > maxPieces) {
+            return NONE;
+        }
+        int key = EndgameTable.materialKey(pos);
+        if (key < 0 || byMaterial[key] == null) {
+            return NONE;
+        }
+        return byMaterial[key].probe(pos);
+    }
+
+    // A short description of the position for the player, or null if no table covers it.
+    public String describe(Position pos) {
+        int value = probe(pos);
+        if (value == NONE || value == EndgameTable.INVALID) {
+            return null;
+        }
+        if (value == 0) {
+            return "Tablebase: no forced win";
+        }
+        boolean sideToMoveWins = value % 2 == 1;
+        String winner = pos.isRedTurn() == sideToMoveWins ? "Red" : "Blue";
+        return "Tablebase: " + winner + " takes the Sau in " + value + (value == 1 ? " ply" : " plies");
+    }
+}
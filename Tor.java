@@ -1,3 +1,5 @@
+import java.util.List;
+
 public class Tor extends Pieces {
 
     private ChessModel board;  
@@ -11,14 +13,6 @@ public class Tor extends Pieces {
         int yPos = row * squareSize;
         initializeScreenPosition(xPos, yPos);
         this.board = board;
-
-        // It uses a method from the parent class to load the
-        // appropriate image based on its team color.
-        initializeImage("pieces/" + (isRed ? "r_tor" : "b_tor"));
-
-        if (getCurrentImage() == null) {
-            System.err.println("Failed to load image for " + (isRed ? "red Tor" : "blue Tor"));
-        }
     }
 
     // Determines whether a move is valid for the Tor piece.
@@ -26,7 +20,8 @@ public class Tor extends Pieces {
     @Override
     public boolean isValid(int col, int row) {
         // The Tor moves either vertically or horizontally.
-        return Math.abs(col - getCol()) == 0 || Math.abs(row - getRow()) == 0;
+        return Position.onBoard(col, row)
+                && (AttackTables.torLines(getSquare()) & Position.bit(Position.square(col, row))) != 0;
     }
 
     // Determines whether there are any pieces blocking the Tor's path.
@@ -36,42 +31,15 @@ public class Tor extends Pieces {
     // Written by Yi Thung
     @Override
     public boolean isCollide(int col, int row) {
-        // Check for obstructions to the left.
-        if (getCol() > col) {
-            for (int c = getCol() - 1; c > col; c--) {
-                if (board.getPiece(c, getRow()) != null) {
-                    return true;
-                }
-            }
-        }
-
-        // Check for obstructions to the right.
-        if (getCol() < col) {
-            for (int c = getCol() + 1; c < col; c++) {
-                if (board.getPiece(c, getRow()) != null) {
-                    return true;
-                }
-            }
-        }
-
-        // Check for obstructions above.
-        if (getRow() > row) {
-            for (int r = getRow() - 1; r > row; r--) {
-                if (board.getPiece(getCol(), r) != null) {
-                    return true;
-                }
-            }
-        }
-
-        // Check for obstructions below.
-        if (getRow() < row) {
-            for (int r = getRow() + 1; r < row; r++) {
-                if (board.getPiece(getCol(), r) != null) {
-                    return true;
-                }
-            }
-        }
+        // Every square passed over comes from the precomputed table, so one AND
+        // with the occupancy mask finds any obstruction.
+        long path = AttackTables.between(getSquare(), Position.square(col, row));
+        return (path & board.getPosition().getOccupied()) != 0;
+    }
 
-        return false;
+    // Adds the squares along the four orthogonal rays until a piece blocks them.
+    @Override
+    public void generateMoves(ChessModel board, List<MovePiece> moves) {
+        addTargets(board, AttackTables.torAttacks(getSquare(), board.getPosition().getOccupied()), moves);
     }
 }
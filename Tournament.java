@@ -0,0 +1,252 @@
+/**
+ * Tournament plays many engine-against-engine games at once to compare two engine settings.
+ * Every game is a headless ChessModel of its own, played on its own thread, and the
+ * moves go through ChessModel exactly as they do in the window.
+ * Games come in pairs that start from the same random opening with the colours
+ * swapped, so neither setting profits from a lucky opening or from moving first.
+ *
+ * The report gives the wins, draws, losses and average length, how the games ended,
+ * the Elo difference of A over B with a 95% error margin, and the games per minute.
+ *
+ * Each game gets a virtual thread when the JVM has them (Java 21 and later),
+ * otherwise the games share one thread per core.
+ * Only maxActive games are played at a time, 64 unless given, since each one holds
+ * two transposition tables of TABLE_MB. The others wait for a free place, so thousands
+ * of games can be queued without thousands of tables.
+ *
+ * With an archive file every game is also appended to it, see GameArchive.
+ *
+ * Usage: java Tournament [games] [depthA] [depthB] [moveLimit] [archiveFile] [maxActive]
+ * An archiveFile of "-" gives maxActive without writing an archive.
+ */
+
+import java.io.IOException;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.Semaphore;
+
+public class Tournament {
+    private static final int OPENING_PLIES = 6; // Random moves before the engines take over
+    private static final int TABLE_MB = 1; // Each engine's table, small since many games run at once
+    public static final int DEFAULT_MAX_ACTIVE = 64; // Games in play at once, 128 MB of tables
+
+    // How a game ended
+    public enum Ending {
+        SAU_CAPTURE, // A Sau was taken
+        MOVE_LIMIT, // Neither Sau was taken within the move limit, a draw
+        NO_MOVES // The side to move had no move, a draw
+    }
+
+    // The outcome of one game, seen from engine A.
+    public static class GameResult {
+        private final int score; // 1 if A won, 0 for a draw, -1 if B won
+        private final int plies;
+        private final Ending ending;
+        private final int archiveResult; // The result as GameArchive stores it, from Red's side
+        private final int[] moves; // Every move from the start position, packed as in Move
+
+        public GameResult(int score, int plies, Ending ending, int archiveResult, int[] moves) {
+            this.score = score;
+            this.plies = plies;
+            this.ending = ending;
+            this.archiveResult = archiveResult;
+            this.moves = moves;
+        }
+    }
+
+    private final int depthA;
+    private final int depthB;
+    private final int moveLimit;
+    private final Semaphore active; // One permit per game allowed in play at once
+
+    public Tournament(int depthA, int depthB, int moveLimit) {
+        this(depthA, depthB, moveLimit, DEFAULT_MAX_ACTIVE);
+    }
+
+    public Tournament(int depthA, int depthB, int moveLimit, int maxActive) {
+        if (maxActive < 1) {
+            throw new IllegalArgumentException("At least one game has to be in play: " + maxActive);
+        }
+        this.depthA = depthA;
+        this.depthB = depthB;
+        this.moveLimit = moveLimit;
+        this.active = new Semaphore(maxActive);
+    }
+
+    public static void main(String[] args) throws InterruptedException, IOException {
+        int games = args.length > 0 ? Integer.parseInt(args[0]) : 200;
+        int depthA = args.length > 1 ? Integer.parseInt(args[1]) : 4;
+        int depthB = args.length > 2 ? Integer.parseInt(args[2]) : 3;
+        int moveLimit = args.length > 3 ? Integer.parseInt(args[3]) : 200;
+        int maxActive = args.length > 5 ? Integer.parseInt(args[5]) : DEFAULT_MAX_ACTIVE;
+
+        Tournament tournament = new Tournament(depthA, depthB, moveLimit, maxActive);
+        System.out.println("A: depth " + depthA + ", B: depth " + depthB + ", " + games + " games, limit "
+                + moveLimit + " plies, at most " + maxActive + " at a time, "
+                + 2L * TABLE_MB * maxActive + " MB of tables");
+        long start = System.nanoTime();
+        List<GameResult> results = tournament.play(games);
+        long millis = (System.nanoTime() - start) / 1_000_000;
+        report(results, millis);
+        if (args.length > 4 && !args[4].equals("-")) { // "-" gives maxActive without an archive
+            Position initial = new Position();
+            initial.setupInitial();
+            try (GameArchive.Writer writer = GameArchive.append(Paths.get(args[4]))) {
+                for (GameResult r : results) {
+                    writer.write(initial, r.moves, r.moves.length, r.archiveResult);
+                }
+            }
+            System.out.println("Games appended to " + args[4]);
+        }
+        System.exit(0);
+    }
+
+    // Plays the games, all of them submitted at once but at most maxActive in play, and waits for the results.
+    public List<GameResult> play(int games) throws InterruptedException {
+        ExecutorService executor = newGameExecutor();
+        List<Future<GameResult>> futures = new ArrayList<>();
+        for (int i = 0; i < games; i++) {
+            long openingSeed = i / 2; // Both games of a pair get the same opening
+            boolean aIsRed = i % 2 == 0;
+            futures.add(executor.submit(() -> {
+                active.acquire(); // The game's tables are only made once it has a place
+                try {
+                    return playGame(openingSeed, aIsRed);
+                } finally {
+                    active.release();
+                }
+            }));
+        }
+        List<GameResult> results = new ArrayList<>();
+        try {
+            for (Future<GameResult> future : futures) {
+                results.add(future.get());
+            }
+        } catch (ExecutionException e) {
+            throw new IllegalStateException("A game failed", e.getCause());
+        } finally {
+            executor.shutdownNow();
+        }
+        return results;
+    }
+
+    // Plays one game on a fresh board. Everything it uses is created here,
+    // so games running side by side share nothing.
+    public GameResult playGame(long openingSeed, boolean aIsRed) {
+        ChessModel model = new ChessModel();
+        model.setQuiet(true);
+        Engine engineA = new Engine(new TranspositionTable(TABLE_MB));
+        Engine engineB = new Engine(new TranspositionTable(TABLE_MB));
+        int[] record = new int[Math.max(moveLimit, OPENING_PLIES)]; // record[i] is the move of turn i
+
+        Random random = new Random(openingSeed);
+        for (int ply = 0; ply < OPENING_PLIES; ply++) {
+            List<MovePiece> moves = model.generateMoves();
+            // An opening that takes a Sau would end the game unplayed
+            moves.removeIf(move -> Move.isSauCapture(move.getMove()));
+            if (moves.isEmpty()) {
+                break;
+            }
+            play(model, moves.get(random.nextInt(moves.size())), record);
+        }
+
+        Ending ending = Ending.MOVE_LIMIT;
+        while (!model.isGameOver() && model.getTurnCount() < moveLimit) {
+            boolean aToMove = model.isRedTurn() == aIsRed;
+            Engine engine = aToMove ? engineA : engineB;
+            Engine.SearchResult result = engine.search(model.getPosition(), aToMove ? depthA : depthB, 0);
+            if (result.getBestMove() == Move.NONE) {
+                ending = Ending.NO_MOVES;
+                break;
+            }
+            play(model, new MovePiece(model, result.getBestMove()), record);
+        }
+
+        int plies = model.getTurnCount();
+        int[] moves = Arrays.copyOf(record, plies);
+        if (!model.isGameOver()) {
+            return new GameResult(0, plies, ending, GameArchive.DRAWN, moves);
+        }
+        boolean redWon = model.getWinner().equals("Red");
+        return new GameResult(redWon == aIsRed ? 1 : -1, plies, Ending.SAU_CAPTURE,
+                redWon ? GameArchive.RED_WON : GameArchive.BLUE_WON, moves);
+    }
+
+    // Plays a move the way the controller does, after checking it with the model's rules,
+    // and records it.
+    private static void play(ChessModel model, MovePiece move, int[] record) {
+        model.selectedPiece = move.getPiece();
+        if (!model.isValidMove(move)) {
+            throw new IllegalStateException("Engine chose an illegal move " + Move.toString(move.getMove()));
+        }
+        record[model.getTurnCount()] = move.getMove();
+        model.makeMove(move);
+        model.selectedPiece = null;
+    }
+
+    // One virtual thread per game where the JVM has them, otherwise a thread per core.
+    // Looked up by reflection so the code still compiles and runs on older JVMs.
+    private static ExecutorService newGameExecutor() {
+        try {
+            return (ExecutorService) Executors.class.getMethod("newVirtualThreadPerTaskExecutor").invoke(null);
+        } catch (ReflectiveOperationException e) {
+            return Executors.newFixedThreadPool(Runtime.getRuntime().availableProcessors());
+        }
+    }
+
+    // Prints the totals, the Elo difference and the throughput.
+    private static void report(List<GameResult> results, long millis) {
+        int n = results.size();
+        int wins = 0;
+        int draws = 0;
+        int losses = 0;
+        long plies = 0;
+        int[] endings = new int[Ending.values().length];
+        for (GameResult r : results) {
+            if (r.score > 0) {
+                wins++;
+            } else if (r.score == 0) {
+                draws++;
+            } else {
+                losses++;
+            }
+            plies += r.plies;
+            endings[r.ending.ordinal()]++;
+        }
+
+        System.out.printf("A wins %d (%.1f%%), draws %d (%.1f%%), B wins %d (%.1f%%)%n",
+                wins, 100.0 * wins / n, draws, 100.0 * draws / n, losses, 100.0 * losses / n);
+        System.out.printf("Average length %.1f plies%n", (double) plies / n);
+        System.out.printf("Endings: Sau captured %d, move limit %d, no moves %d%n",
+                endings[Ending.SAU_CAPTURE.ordinal()], endings[Ending.MOVE_LIMIT.ordinal()],
+                endings[Ending.NO_MOVES.ordinal()]);
+
+        // The mean score per game and its standard error give the Elo difference and its margin
+        double score = (wins + 0.5 * draws) / n;
+        double variance = (wins * Math.pow(1 - score, 2) + draws * Math.pow(0.5 - score, 2)
+                + losses * Math.pow(score, 2)) / n;
+        double margin = 1.96 * Math.sqrt(variance / n);
+        double elo = elo(score);
+        double errorBar = (elo(score + margin) - elo(score - margin)) / 2;
+        System.out.printf("Elo A - B: %+.1f +/- %.1f (95%%)%n", elo, errorBar);
+        System.out.printf("%d games in %.1f s, %.1f games/min%n", n, millis / 1000.0, n * 60000.0 / Math.max(1, millis));
+    }
+
+    // The Elo difference that makes the given score expected, infinite for a score of 0 or 1.
+    private static double elo(double score) {
+        if (score <= 0) {
+            return Double.NEGATIVE_INFINITY;
+        }
+        if (score >= 1) {
+            return Double.POSITIVE_INFINITY;
+        }
+        return -400 * Math.log10(1 / score - 1);
+    }
+}
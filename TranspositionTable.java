@@ -0,0 +1,150 @@
+/**
+ * TranspositionTable remembers what the search learned about positions it has seen,
+ * keyed by Position.getKey(). The Tor/Xor swap means the same position is reached
+ * by many move orders, and the table lets the search score it only once.
+ *
+ * The table has a fixed size and never allocates after it is created. Entries sit in
+ * buckets of two; a new entry replaces a matching one, otherwise the entry left over
+ * from an older search or, failing that, the shallower one.
+ *
+ * Several search threads may share one table without locks. An entry is stored
+ * as two longs, the key XOR the data and the data itself. A probe that reads half
+ * of one write and half of another finds that they do not XOR back to its key and
+ * treats the entry as missing.
+ *
+ * Probes return the entry data as a long, decoded with the static methods below.
+ *
+ *   bits  0-20  best move, packed as in Move
+ *   bits 21-40  score plus SCORE_OFFSET
+ *   bits 41-47  depth searched
+ *   bits 48-49  bound: EXACT, LOWER or UPPER
+ *   bits 50-57  age of the search that stored it
+ */
+
+import java.util.Arrays;
+
+public final class TranspositionTable {
+    // What the stored score says about the real score
+    public static final int EXACT = 1;
+    public static final int LOWER = 2; // The real score is at least this, the search failed high
+    public static final int UPPER = 3; // The real score is at most this, the search failed low
+
+    private static final int ENTRY_LONGS = 2;
+    private static final int BUCKET_ENTRIES = 2;
+    private static final int SCORE_OFFSET = 1 << 19;
+
+    private final long[] slots; // ENTRY_LONGS per entry, BUCKET_ENTRIES entries per bucket
+    private final int bucketMask;
+    private volatile int age; // Bumped by newSearch, so entries from older searches are replaced first
+
+    // Creates a table of at most the given number of megabytes, rounded down to a power of two.
+    public TranspositionTable(int megabytes) {
+        long bytes = Math.max(1, megabytes) * 1024L * 1024L;
+        long buckets = Long.highestOneBit(bytes / (8 * ENTRY_LONGS * BUCKET_ENTRIES));
+        buckets = Math.min(buckets, 1 << 26); // Keeps the slot array within an int index
+        slots = new long[(int) buckets * ENTRY_LONGS * BUCKET_ENTRIES];
+        bucketMask = (int) buckets - 1;
+    }
+
+    // Marks the start of a new search. Entries already in the table stay usable
+    // but become the first to be replaced.
+    public void newSearch() {
+        age = (age + 1) & 0xFF;
+    }
+
+    // Empties the table.
+    public void clear() {
+        Arrays.fill(slots, 0);
+        age = 0;
+    }
+
+    public int capacity() {
+        return slots.length / ENTRY_LONGS;
+    }
+
+    // The entry data for the key, or 0 if the table does not hold it.
+    public long probe(long key) {
+        int base = bucket(key);
+        for (int i = base; i < base + ENTRY_LONGS * BUCKET_ENTRIES; i += ENTRY_LONGS) {
+            long data = slots[i + 1];
+            if ((slots[i] ^ data) == key && data != 0) {
+                return data;
+            }
+        }
+        return 0;
+    }
+
+    // Stores what a search found about the position with the given key.
+    // A missing move keeps the move already stored for the same position.
+    public void store(long key, int move, int score, int depth, int bound) {
+        int base = bucket(key);
+        int currentAge = age;
+        int victim = base;
+        int victimPriority = Integer.MAX_VALUE;
+        for (int i = base; i < base + ENTRY_LONGS * BUCKET_ENTRIES; i += ENTRY_LONGS) {
+            long data = slots[i + 1];
+            if ((slots[i] ^ data) == key && data != 0) {
+                // Keep a deeper result from this search unless the new one is exact
+                if (age(data) == currentAge && depth(data) > depth && bound != EXACT) {
+                    return;
+                }
+                if (move == Move.NONE) {
+                    move = move(data);
+                }
+                victim = i;
+                break;
+            }
+            int priority = data == 0 ? -1 : depth(data) + (age(data) == currentAge ? 256 : 0);
+            if (priority < victimPriority) {
+                victim = i;
+                victimPriority = priority;
+            }
+        }
+        long data = (move & 0x1FFFFFL)
+                | ((long) (score + SCORE_OFFSET) << 21)
+                | ((long) depth << 41)
+                | ((long) bound << 48)
+                | ((long) currentAge << 50);
+        slots[victim] = key ^ data;
+        slots[victim + 1] = data;
+    }
+
+    // Roughly how full the table is, in parts per thousand, judged from the first thousand entries.
+    public int hashFull() {
+        int used = 0;
+        int sampled = Math.min(1000, capacity());
+        for (int i = 0; i < sampled; i++) {
+            long data = slots[i * ENTRY_LONGS + 1];
+            if (data != 0 && age(data) == age) {
+                used++;
+            }
+        }
+        return used * 1000 / sampled;
+    }
+
+    private int bucket(long key) {
+        return ((int) key & bucketMask) * ENTRY_LONGS * BUCKET_ENTRIES;
+    }
+
+    // ================== Entry Data ==================
+
+    public static int move(long data) {
+        return (int) (data & 0x1FFFFF);
+    }
+
+    public static int score(long data) {
+        return (int) ((data >>> 21) & 0xFFFFF) - SCORE_OFFSET;
+    }
+
+    public static int depth(long data) {
+        return (int) ((data >>> 41) & 0x7F);
+    }
+
+    public static int bound(long data) {
+        return (int) ((data >>> 48) & 3);
+    }
+
+    public static int age(long data) {
+        return (int) ((data >>> 50) & 0xFF);
+    }
+}
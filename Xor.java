@@ -1,3 +1,5 @@
+import java.util.List;
+
 public class Xor extends Pieces {
 
     private ChessModel board; 
@@ -11,21 +13,14 @@ public class Xor extends Pieces {
         int yPos = row * squareSize;
         initializeScreenPosition(xPos, yPos);
         this.board = board;
-
-        // It uses a method from the parent class to load the
-        // appropriate image based on its team color.
-        initializeImage("pieces/" + (isRed ? "r_xor" : "b_xor"));
-
-        if (getCurrentImage() == null) {
-            System.err.println("Failed to load image for " + (isRed ? "red Xor" : "blue Xor"));
-        }
     }
 
     // Determines whether a move is valid for the Xor piece.
     // Written by Yi Thung
     public boolean isValid(int col, int row) {
         // The Xor moves diagonally.
-        return Math.abs(getCol() - col) == Math.abs(getRow() - row);
+        return Position.onBoard(col, row)
+                && (AttackTables.xorLines(getSquare()) & Position.bit(Position.square(col, row))) != 0;
     }
 
     // Determines whether there are any pieces blocking the Xor's path.
@@ -33,44 +28,15 @@ public class Xor extends Pieces {
     // True if there is obstruction, false otherwise.
     // Written by Yi Thung
     public boolean isCollide(int col, int row) {
-        // Check for obstacles in the diagonal paths.
-
-        // Up-left direction
-        if (getCol() > col && getRow() > row) {
-            for (int i = 1; i < Math.abs(getCol() - col); i++) {
-                if (board.getPiece(getCol() - i, getRow() - i) != null) {
-                    return true;
-                }
-            }
-        }
-
-        // Up-right direction
-        if (getCol() < col && getRow() > row) {
-            for (int i = 1; i < Math.abs(getCol() - col); i++) {
-                if (board.getPiece(getCol() + i, getRow() - i) != null) {
-                    return true;
-                }
-            }
-        }
-
-        // Down-left direction
-        if (getCol() > col && getRow() < row) {
-            for (int i = 1; i < Math.abs(getCol() - col); i++) {
-                if (board.getPiece(getCol() - i, getRow() + i) != null) {
-                    return true;
-                }
-            }
-        }
-
-        // Down-right direction
-        if (getCol() < col && getRow() < row) {
-            for (int i = 1; i < Math.abs(getCol() - col); i++) {
-                if (board.getPiece(getCol() + i, getRow() + i) != null) {
-                    return true;
-                }
-            }
-        }
+        // Every square passed over comes from the precomputed table, so one AND
+        // with the occupancy mask finds any obstruction.
+        long path = AttackTables.between(getSquare(), Position.square(col, row));
+        return (path & board.getPosition().getOccupied()) != 0;
+    }
 
-        return false;
+    // Adds the squares along the four diagonal rays until a piece blocks them.
+    @Override
+    public void generateMoves(ChessModel board, List<MovePiece> moves) {
+        addTargets(board, AttackTables.xorAttacks(getSquare(), board.getPosition().getOccupied()), moves);
     }
 }
@@ -0,0 +1,67 @@
+/**
+ * Zobrist holds the random numbers Position combines into its 64-bit key.
+ * A key is the XOR of one number for every piece on its square, one for every
+ * Ram heading back, one for Blue to move and one for the turn count modulo 4,
+ * since that phase decides when the Tors and Xors swap.
+ * Two positions with the same key can be treated as the same position by the search.
+ * The numbers come from a fixed seed, so keys are the same in every run.
+ */
+public final class Zobrist {
+    private static final long[][] PIECES = new long[1 + 2 * Position.TYPES][Position.SQUARES]; // By piece code and square
+    private static final long[] RAM_REVERSED = new long[Position.SQUARES];
+    private static final long[] PHASE = new long[4];
+    private static final long BLUE_TO_MOVE;
+
+    static {
+        long seed = 0x5A0BD15C0FFEEL;
+        for (int code = 1; code < PIECES.length; code++) {
+            for (int square = 0; square < Position.SQUARES; square++) {
+                seed = next(seed);
+                PIECES[code][square] = mix(seed);
+            }
+        }
+        for (int square = 0; square < Position.SQUARES; square++) {
+            seed = next(seed);
+            RAM_REVERSED[square] = mix(seed);
+        }
+        // Phase 0 keeps the key of a new game free of a phase term
+        for (int phase = 1; phase < PHASE.length; phase++) {
+            seed = next(seed);
+            PHASE[phase] = mix(seed);
+        }
+        seed = next(seed);
+        BLUE_TO_MOVE = mix(seed);
+    }
+
+    private Zobrist() {
+    }
+
+    // The number for a piece code, as stored in Position's mailbox, on a square.
+    public static long piece(int code, int square) {
+        return PIECES[code][square];
+    }
+
+    public static long ramReversed(int square) {
+        return RAM_REVERSED[square];
+    }
+
+    // The number for a turn count, only its value modulo 4 matters.
+    public static long phase(int turnCount) {
+        return PHASE[turnCount & 3];
+    }
+
+    public static long blueToMove() {
+        return BLUE_TO_MOVE;
+    }
+
+    // SplitMix64, a small generator whose outputs are well spread over all 64 bits.
+    private static long next(long seed) {
+        return seed + 0x9E3779B97F4A7C15L;
+    }
+
+    private static long mix(long z) {
+        z = (z ^ (z >>> 30)) * 0xBF58476D1CE4E5B9L;
+        z = (z ^ (z >>> 27)) * 0x94D049BB133111EBL;
+        return z ^ (z >>> 31);
+    }
+}